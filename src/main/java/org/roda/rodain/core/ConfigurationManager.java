@@ -489,6 +489,27 @@ public class ConfigurationManager {
     return getConfigAsBoolean(key, false);
   }
 
+  /**
+   * @param key
+   *          The name of the property (config)
+   * @param defaultValue
+   *          The value returned when the property is missing or isn't a
+   *          number
+   * @return The value of the property (config)
+   */
+  public static int getConfigAsInteger(String key, int defaultValue) {
+    String value = getConfig(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      LOGGER.warn("The value of the property '{}' isn't a number: {}", key, value);
+      return defaultValue;
+    }
+  }
+
   /**
    * @param key
    *          The name of the property (config)
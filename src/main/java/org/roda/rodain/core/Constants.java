@@ -34,6 +34,7 @@ public final class Constants {
   public static final String RODAIN_CONFIG_FOLDER = "roda-in";
   public static final String RODAIN_SERIALIZE_FILE_PREFIX = "serial_";
   public static final String RODAIN_SERIALIZE_FILE_METS_HEADER_SUFFIX = "_metsheader.bin";
+  public static final String RODAIN_PATH_STATES_SNAPSHOT_FILE = ".paths.bin";
   public static final String RODAIN_GITHUB_LATEST_VERSION_LINK = "https://github.com/keeps/roda-in/releases";
   public static final String RODAIN_GITHUB_LATEST_VERSION_API_LINK = "https://api.github.com/repos/keeps/roda-in/releases/latest";
   public static final String RODAIN_GUI_TITLE = "RODA-In";
@@ -125,6 +126,16 @@ public final class Constants {
   public static final String CONF_K_EXPORT_LAST_SIP_OUTPUT_FOLDER = "export.lastSipOutputFolder";
   public static final String CONF_K_ID_PREFIX = "idPrefix";
   public static final String CONF_K_SIP_CREATION_ALWAYS_JUMP_FOLDER = "sipPreviewCreator.createSip.alwaysJumpFolder";
+  public static final String CONF_K_SIP_CREATION_WORKERS = "sipCreation.workers";
+  public static final String CONF_K_SIP_CREATION_RESUME = "sipCreation.resume";
+  public static final String CONF_K_SIP_CREATION_VERIFY_CHECKSUMS = "sipCreation.resume.verifyChecksums";
+  public static final String CONF_K_WALK_FILE_TREE_PARALLELISM = "walkFileTree.parallelism";
+  public static final String CONF_K_VISITOR_STACK_POOL_SIZE = "visitorStack.poolSize";
+  public static final String CONF_K_DIRECTORY_CACHE_MAX_ENTRIES = "directoryCache.maxEntries";
+  public static final String CONF_K_DIRECTORY_SIZE_CACHE_MAX_DIRECTORIES = "directorySizeCache.maxDirectories";
+  public static final String CONF_K_SIP_PREVIEW_CHUNK_SIZE = "sipPreviewCreator.chunkSize";
+  public static final String CONF_K_CHECKSUM_CACHE_MAX_ENTRIES = "checksumCache.maxEntries";
+  public static final String CONF_K_CHECKSUM_CACHE_PARALLELISM = "checksumCache.parallelism";
   // METS Header fields
   public static final String CONF_K_METS_HEADER_FIELDS_PREFIX = "metsheader.";
   public static final String CONF_K_METS_HEADER_FIELDS_SUFFIX = ".fields";
@@ -169,6 +180,7 @@ public final class Constants {
   // configs files
   public static final String CONFIG_FILE = "config.properties";
   public static final String APP_CONFIG_FILE = ".app.properties";
+  public static final String CHECKSUM_CACHE_FILE = ".checksums.jsonl";
   // configs values
   public static final String CONF_V_TRUE = MISC_TRUE;
   public static final String CONF_V_FALSE = MISC_FALSE;
@@ -178,6 +190,7 @@ public final class Constants {
   public static final String EVENT_REMOVE_FROM_RULE = "Remove from rule";
   public static final String EVENT_REMOVED_SIP = "Removed SIP";
   public static final String EVENT_FINISHED = "Finished";
+  public static final String EVENT_SIPS_CHUNK = "Sips chunk";
 
   // date related formats
   public static final String DATE_FORMAT_1 = "yyyy.MM.dd HH.mm.ss.SSS";
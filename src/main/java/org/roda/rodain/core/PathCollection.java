@@ -1,16 +1,18 @@
 package org.roda.rodain.core;
 
-import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
-import org.apache.commons.lang3.StringUtils;
 import org.roda.rodain.core.Constants.PathState;
 import org.roda.rodain.ui.source.items.SourceTreeDirectory;
 import org.roda.rodain.ui.source.items.SourceTreeItem;
@@ -26,14 +28,28 @@ import org.slf4j.LoggerFactory;
  * state of a path can be changed and, with this class, this information is
  * always coherent, since all of them report the changes to it.
  * </p>
+ * <p>
+ * The paths are kept in a tree where each node is a name segment of a path, so
+ * that getting the children of a directory costs the size of its subtree
+ * instead of the size of the whole collection. Each directory keeps a count of
+ * its children in each state, so verifying its state after a change of one of
+ * the children doesn't require iterating its siblings.
+ * </p>
+ * <p>
+ * The collection can be updated from several threads at the same time (e.g.
+ * rule visitors registering paths in parallel). The nodes of the tree are
+ * locked individually, so that the children counters of a directory are always
+ * coherent and the state derived from them is never overwritten by an older
+ * one.
+ * </p>
  *
  * @author Andre Pereira apereira@keep.pt
  * @since 12-11-2015.
  */
 public class PathCollection {
   private static final Logger LOGGER = LoggerFactory.getLogger(PathCollection.class.getName());
-  private static Map<Path, PathState> states = new ConcurrentHashMap<>();
-  private static Map<Path, SourceTreeItem> items = new HashMap<>();
+  private static volatile PathNode tree = new PathNode(null, null);
+  private static volatile PathNode.Names names = new PathNode.Names();
 
   private PathCollection() {
   }
@@ -45,8 +61,8 @@ public class PathCollection {
    *          The path to be added to the collection
    */
   public static void simpleAddPath(Path path) {
-    if (!"".equals(path.toString()) && !states.containsKey(path)) {
-      states.put(path, PathState.NORMAL);
+    if (!isEmpty(path)) {
+      getOrCreateNode(path).compareAndSetState(null, PathState.NORMAL);
     }
   }
 
@@ -70,63 +86,61 @@ public class PathCollection {
    *          The state of the item.
    */
   public static void addPath(Path path, PathState st) {
-    if ("".equals(path)) {
+    if (isEmpty(path)) {
       return;
     }
+    PathNode node = getOrCreateNode(path);
     // ignoring or removing the ignore of an item
     if (st == PathState.IGNORED) {
-      applySameStateAllChildren(path, PathState.NORMAL, st);
+      applySameStateAllChildren(node, PathState.NORMAL, st);
     }
     if (st == PathState.MAPPED) {
-      applySameStateAllChildren(path, PathState.NORMAL, st);
+      applySameStateAllChildren(node, PathState.NORMAL, st);
     }
-    if (st == PathState.NORMAL && states.get(path) == PathState.IGNORED) {
-      applySameStateAllChildren(path, PathState.IGNORED, st);
-      verifyStateAncestors(path);
+    if (st == PathState.NORMAL && node.getState() == PathState.IGNORED) {
+      applySameStateAllChildren(node, PathState.IGNORED, st);
+      verifyStateAncestors(node);
     }
 
-    if (states.get(path) != PathState.NORMAL) {
-      states.put(path, st);
-      verifyStateAncestors(path);
+    if (node.getState() != PathState.NORMAL) {
+      node.setState(st);
+      verifyStateAncestors(node);
     } else {
-      verifyState(path);
+      verifyState(node);
     }
-    states.put(path, st);
+    node.setState(st);
 
     // if there's an item with this path
-    if (items.containsKey(path)) {
-      SourceTreeItem item = items.get(path);
-      item.setState(states.get(path));
-      verifyStateAncestors(path);
+    SourceTreeItem item = node.getItem();
+    if (item != null) {
+      item.setState(node.getState());
+      verifyStateAncestors(node);
       if (item instanceof SourceTreeDirectory) {
         ((SourceTreeDirectory) item).moveChildrenWrongState();
       }
     }
 
-    Path parent = path.getParent();
+    PathNode parent = node.getParent();
     // move the modified children in the parent
-    if (parent != null && items.containsKey(parent) && items.get(parent) instanceof SourceTreeDirectory) {
-      ((SourceTreeDirectory) items.get(parent)).moveChildrenWrongState();
+    if (parent != null && parent.getItem() instanceof SourceTreeDirectory) {
+      ((SourceTreeDirectory) parent.getItem()).moveChildrenWrongState();
     }
   }
 
-  private static void applySameStateAllChildren(Path path, PathState previousState, PathState state) {
-    if ("".equals(path)) {
-      return;
-    }
-    states.put(path, state);
-
-    if (Files.isDirectory(path)) {
-      Map<Path, PathState> children = getAllChildren(path);
-      for (Path child : children.keySet()) {
-        if (states.get(child) == previousState) {
-          states.put(child, state);
-          // update the item
-          if (items.containsKey(child)) {
-            items.get(child).setState(state);
-          }
+  private static void applySameStateAllChildren(PathNode node, PathState previousState, PathState state) {
+    node.setState(state);
+    applySameStateDescendants(node, previousState, state);
+  }
+
+  private static void applySameStateDescendants(PathNode node, PathState previousState, PathState state) {
+    for (PathNode child : node.getChildren()) {
+      if (child.compareAndSetState(previousState, state)) {
+        // update the item
+        if (child.getItem() != null) {
+          child.getItem().setState(state);
         }
       }
+      applySameStateDescendants(child, previousState, state);
     }
   }
 
@@ -140,8 +154,81 @@ public class PathCollection {
    * @see #addPath(String, PathState)
    */
   public static void addPaths(Set<String> paths, PathState st) {
-    for (String path : paths)
-      addPath(Paths.get(path), st);
+    applyStates(paths.stream().map(Paths::get).collect(Collectors.toList()), st);
+  }
+
+  /**
+   * Sets the state of a collection of paths at once.
+   * <p/>
+   * <p>
+   * The result is the same as calling {@link #addPath(Path, PathState)} for each
+   * path, but the work is shared between them: first, the state of every path
+   * (and of its children, when needed) is set; then, the state of each affected
+   * ancestor is verified exactly once, from the deepest to the shallowest.
+   * Finally, each affected SourceTreeDirectory is asked to move its children
+   * with the wrong state only once.
+   * </p>
+   *
+   * @param paths
+   *          The paths to be added to the collection.
+   * @param st
+   *          The state of the paths.
+   */
+  public static void applyStates(Collection<Path> paths, PathState st) {
+    Set<PathNode> changed = new HashSet<>();
+    Set<SourceTreeDirectory> directories = new LinkedHashSet<>();
+    for (Path path : paths) {
+      if (isEmpty(path)) {
+        continue;
+      }
+      PathNode node = getOrCreateNode(path);
+      if (st == PathState.IGNORED || st == PathState.MAPPED) {
+        applySameStateAllChildren(node, PathState.NORMAL, st);
+      } else if (node.getState() == PathState.IGNORED) {
+        applySameStateAllChildren(node, PathState.IGNORED, st);
+      }
+      node.setState(st);
+      changed.add(node);
+
+      SourceTreeItem item = node.getItem();
+      if (item != null) {
+        item.setState(st);
+        if (item instanceof SourceTreeDirectory) {
+          directories.add((SourceTreeDirectory) item);
+        }
+      }
+    }
+
+    // verify each ancestor only once, starting with the deepest ones
+    PriorityQueue<PathNode> toVerify = new PriorityQueue<>(
+      Comparator.comparingInt(PathNode::getDepth).reversed());
+    Set<PathNode> queued = new HashSet<>();
+    for (PathNode node : changed) {
+      queueParent(node, changed, toVerify, queued);
+    }
+    while (!toVerify.isEmpty()) {
+      PathNode node = toVerify.poll();
+      boolean updated = true;
+      if (node.hasState()) {
+        updated = verifyState(node);
+      }
+      if (node.getItem() instanceof SourceTreeDirectory) {
+        directories.add((SourceTreeDirectory) node.getItem());
+      }
+      if (updated) {
+        queueParent(node, changed, toVerify, queued);
+      }
+    }
+
+    directories.forEach(SourceTreeDirectory::moveChildrenWrongState);
+  }
+
+  private static void queueParent(PathNode node, Set<PathNode> changed, PriorityQueue<PathNode> toVerify,
+    Set<PathNode> queued) {
+    PathNode parent = node.getParent();
+    if (parent != null && parent != tree && !changed.contains(parent) && queued.add(parent)) {
+      toVerify.add(parent);
+    }
   }
 
   /**
@@ -159,47 +246,55 @@ public class PathCollection {
     if ("".equals(path)) {
       return;
     }
-    if (!states.containsKey(path)) {
-      states.put(Paths.get(path), item.getState());
+    PathNode node = getOrCreateNode(Paths.get(path));
+    node.setState(item.getState());
+    node.setItem(item);
+  }
+
+  /**
+   * Removes a SourceTreeItem reference from the collection. The state of its
+   * path is kept.
+   *
+   * @param item
+   *          The item to be removed from the collection.
+   */
+  public static void removeItem(SourceTreeItem item) {
+    String path = item.getPath();
+    if (path == null || "".equals(path)) {
+      return;
+    }
+    PathNode node = getNode(Paths.get(path));
+    if (node != null && node.getItem() == item) {
+      node.setItem(null);
     }
-    items.put(Paths.get(path), item);
   }
 
   /**
    * Used to get the state associated with a path.
+   * <p/>
+   * <p>
+   * This is a pure read, the collection is never changed: if the path isn't in
+   * the collection, the state is inherited from its nearest ancestor that is.
+   * The lookup walks down the tree once, so it costs the depth of the path and
+   * takes no locks.
+   * </p>
    *
    * @param path
    *          The path used to get the state.
-   * @return The path's associated state if the path is in the collection,
-   *         otherwise NORMAL.
+   * @return The state of the path or of its nearest ancestor in the
+   *         collection, NORMAL if there's none.
    */
   public static PathState getState(Path path) {
     PathState result = PathState.NORMAL;
-    if (states.containsKey(path)) {
-      result = states.get(path);
-    } else {
-      Path parent = path.getParent();
-      if (parent != null) {
-        if (Files.isDirectory(parent)) {
-          result = getStateWithoutAddingParents(parent);
-          addPath(path, result);
-        }
-      }
-    }
-    return result;
-  }
-
-  private static PathState getStateWithoutAddingParents(Path path) {
-    PathState result = PathState.NORMAL;
-    if (states.containsKey(path)) {
-      result = states.get(path);
-    } else {
-      Path parent = path.getParent();
-      if (parent != null) {
-        if (Files.isDirectory(parent)) {
-          result = getState(parent);
-        }
+    PathNode node = tree.getChild(getRootName(path));
+    Iterator<Path> segments = path.iterator();
+    while (node != null) {
+      // read once, the state can be changed by other threads
+      PathState state = node.getState();
+      if (state != null) {
+        result = state;
       }
+      node = segments.hasNext() ? node.getChild(segments.next().toString()) : null;
     }
     return result;
   }
@@ -213,26 +308,26 @@ public class PathCollection {
    *         otherwise.
    */
   public static SourceTreeItem getItem(Path path) {
-    return items.get(path);
+    PathNode node = getNode(path);
+    return node == null ? null : node.getItem();
   }
 
   public static void removePathAndItem(Path path) {
-    states.remove(path);
-    items.remove(path);
-
-    Map<Path, PathState> children = getAllChildren(path);
-    children.keySet().forEach(PathCollection::removePathAndItem);
+    PathNode node = getNode(path);
+    if (node != null && node.getParent() != null) {
+      node.getParent().removeChild(node.getName());
+    }
   }
 
-  private static void verifyStateAncestors(Path path) {
-    while (path.getParent() != null) {
-      path = path.getParent();
+  private static void verifyStateAncestors(PathNode node) {
+    while (node.getParent() != null && node.getParent() != tree) {
+      node = node.getParent();
       boolean updated = true;
-      if (states.containsKey(path)) {
-        updated = verifyState(path);
+      if (node.hasState()) {
+        updated = verifyState(node);
 
-        if (items.containsKey(path)) {
-          SourceTreeDirectory dir = (SourceTreeDirectory) items.get(path);
+        if (node.getItem() != null) {
+          SourceTreeDirectory dir = (SourceTreeDirectory) node.getItem();
           dir.moveChildrenWrongState();
         }
       }
@@ -245,80 +340,93 @@ public class PathCollection {
   /*
    * Returns true if the state was updated, false if the state was the same.
    */
-  private static boolean verifyState(Path path) {
-    if ("".equals(path)) {
-      return false;
-    }
+  private static boolean verifyState(PathNode node) {
+    boolean updated = node.deriveStateFromChildren();
 
-    PathState currentState = null;
-    PathState newState = null;
-    if (states.containsKey(path)) {
-      currentState = states.get(path);
-    }
-    int normalItems = 0, ignoredItems = 0, mappedItems = 0;
-    Map<Path, PathState> children = getDirectChildren(path);
-    for (Path child : children.keySet()) {
-      switch (states.get(child)) {
-        case MAPPED:
-          mappedItems++;
-          break;
-        case IGNORED:
-          ignoredItems++;
-          break;
-        default:
-          normalItems++;
-          break;
-      }
+    if (node.getItem() != null) {
+      node.getItem().setState(node.getState());
     }
+    return updated;
+  }
 
-    if (normalItems == 0) {
-      // only MAPPED items, the directory is MAPPED
-      if (mappedItems != 0 && ignoredItems == 0) {
-        newState = PathState.MAPPED;
-        states.put(path, PathState.MAPPED);
-      }
-      // only IGNORED items, the directory is IGNORED
-      if (mappedItems == 0 && ignoredItems != 0) {
-        newState = PathState.IGNORED;
-        states.put(path, PathState.IGNORED);
-      }
-      // IGNORED and MAPPED items, the directory is MAPPED
-      if (mappedItems != 0 && ignoredItems != 0) {
-        newState = PathState.MAPPED;
-        states.put(path, PathState.MAPPED);
+  /*
+   * Returns the node of the path, or null if there's no node for it in the tree.
+   */
+  private static PathNode getNode(Path path) {
+    PathNode node = tree.getChild(getRootName(path));
+    for (Path segment : path) {
+      if (node == null) {
+        break;
       }
-    } else { // there's at least one NORMAL item, so the directory must be
-      // NORMAL
-      newState = PathState.NORMAL;
-      states.put(path, PathState.NORMAL);
-    }
-
-    if (items.containsKey(path)) {
-      SourceTreeItem item = items.get(path);
-      item.setState(states.get(path));
+      node = node.getChild(segment.toString());
     }
+    return node;
+  }
 
-    if (currentState != null && newState != null) {
-      return currentState != newState;
+  /*
+   * Returns the node of the path, creating it (and the nodes of its ancestors)
+   * if needed. The created ancestors have no state.
+   */
+  private static PathNode getOrCreateNode(Path path) {
+    PathNode node = tree.getOrCreateChild(getRootName(path), names);
+    for (Path segment : path) {
+      node = node.getOrCreateChild(segment.toString(), names);
     }
-    return true;
+    return node;
   }
 
-  private static Map<Path, PathState> getDirectChildren(Path path) {
-    int countSeparators = StringUtils.countMatches(path.toString(), File.separator) + 1;
-    return states.entrySet().stream().parallel()
-      .filter(p -> p.getKey().startsWith(path)
-        && StringUtils.countMatches(p.getKey().toString(), File.separator) == countSeparators)
-      .collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue()));
+  private static String getRootName(Path path) {
+    Path root = path.getRoot();
+    return root == null ? "" : root.toString();
   }
 
-  private static Map<Path, PathState> getAllChildren(Path path) {
-    return states.entrySet().stream().parallel().filter(p -> p.getKey().startsWith(path))
-      .collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue()));
+  private static boolean isEmpty(Path path) {
+    return path == null || "".equals(path.toString());
   }
 
   public static void reset() {
-    states = new HashMap<>();
-    items = new HashMap<>();
+    tree = new PathNode(null, null);
+    names = new PathNode.Names();
+  }
+
+  /**
+   * Writes a snapshot of the paths in the collection with one of the states
+   * received as parameter to a file, so that they can be restored later with
+   * {@link #loadSnapshot(Path, Set)}.
+   *
+   * @param file
+   *          The file where the snapshot will be written.
+   * @param states
+   *          The states that will be restored. Paths in other states are only
+   *          written when they're an ancestor of a path that is restored.
+   */
+  public static void writeSnapshot(Path file, Set<PathState> states) {
+    try {
+      PathSnapshot.write(tree, file, states);
+    } catch (IOException e) {
+      LOGGER.error("Error writing the path states snapshot", e);
+    }
+  }
+
+  /**
+   * Restores the states of the paths saved in a snapshot, without accessing the
+   * paths themselves. Does nothing if the snapshot doesn't exist.
+   *
+   * @param file
+   *          The snapshot file.
+   * @param states
+   *          The states to be restored. Paths in other states are not added to
+   *          the collection.
+   */
+  public static void loadSnapshot(Path file, Set<PathState> states) {
+    if (!Files.exists(file)) {
+      return;
+    }
+    try {
+      int restored = PathSnapshot.read(tree, names, file, states);
+      LOGGER.debug("Restored the state of {} paths from {}", restored, file);
+    } catch (IOException e) {
+      LOGGER.error("Error reading the path states snapshot", e);
+    }
   }
-}
\ No newline at end of file
+}
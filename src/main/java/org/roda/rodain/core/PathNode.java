@@ -0,0 +1,371 @@
+package org.roda.rodain.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.roda.rodain.core.Constants.PathState;
+import org.roda.rodain.ui.source.items.SourceTreeItem;
+
+/**
+ * A node of the path tree used by {@link PathCollection}. Each node represents
+ * one name segment of a path and keeps its children, its state and the
+ * SourceTreeItem associated to it (if any).
+ * <p/>
+ * <p>
+ * Nodes that only exist to connect a known path to the root of the tree have no
+ * state, i.e., they are not part of the collection.
+ * </p>
+ * <p>
+ * Each node also keeps a count of its direct children in each state, which is
+ * updated whenever a child changes state. This way the state of a directory can
+ * be derived from its children without iterating them.
+ * </p>
+ * <p>
+ * Since there can be millions of nodes, they are kept compact: a node only
+ * stores its name segment and a reference to its parent, never the full path,
+ * and the children are kept in a plain open addressing table instead of a map
+ * with an entry object per child. The name segments are shared through a
+ * {@link Names} table of the tree, so repeated names (e.g. "data") are only
+ * stored once.
+ * </p>
+ * <p>
+ * Nodes are safe to use from several threads. Each node is its own lock: the
+ * state of a node is guarded by the node and the children counters are guarded
+ * by the parent. Locks are only ever nested from a node to its parent, never
+ * downwards, so threads working on different subtrees don't block each other
+ * and can't deadlock.
+ * </p>
+ *
+ * @author agent agent@local
+ * @since 18/10/2026.
+ */
+class PathNode {
+  private static final PathNode[] NO_CHILDREN = new PathNode[0];
+  private static final int MIN_TABLE_SIZE = 4;
+
+  private final String name;
+  private final PathNode parent;
+  private final int depth;
+  // open addressing table of the children, keyed by name. It's only modified
+  // while holding the node's lock and it's published by childCount, so it can
+  // be read without locking
+  private volatile PathNode[] children = NO_CHILDREN;
+  private volatile int childCount;
+  private volatile PathState state;
+  private volatile SourceTreeItem item;
+  // the state of this node as it is counted in the parent's counters. Only
+  // accessed while holding the parent's lock
+  private PathState countedState;
+  private int normalChildren, ignoredChildren, mappedChildren;
+
+  /**
+   * Creates a new PathNode object.
+   *
+   * @param name
+   *          The name segment of the path represented by the node.
+   * @param parent
+   *          The parent node, null if this is the root of the tree.
+   */
+  PathNode(String name, PathNode parent) {
+    this.name = name;
+    this.parent = parent;
+    this.depth = parent == null ? 0 : parent.depth + 1;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  PathNode getParent() {
+    return parent;
+  }
+
+  /**
+   * @return The number of ancestors of the node.
+   */
+  int getDepth() {
+    return depth;
+  }
+
+  PathState getState() {
+    return state;
+  }
+
+  /**
+   * Sets the state of the node and updates the children counters of its
+   * parent.
+   *
+   * @param newState
+   *          The new state of the node.
+   */
+  void setState(PathState newState) {
+    PathState previous;
+    synchronized (this) {
+      previous = state;
+      state = newState;
+    }
+    if (previous != newState && parent != null) {
+      parent.childStateChanged(this);
+    }
+  }
+
+  /**
+   * Atomically sets the state of the node if the current state is the expected
+   * one.
+   *
+   * @param expected
+   *          The expected current state, null if the node must have no state.
+   * @param newState
+   *          The new state of the node.
+   * @return True if the state was set, false otherwise.
+   */
+  boolean compareAndSetState(PathState expected, PathState newState) {
+    synchronized (this) {
+      if (state != expected) {
+        return false;
+      }
+      state = newState;
+    }
+    if (expected != newState && parent != null) {
+      parent.childStateChanged(this);
+    }
+    return true;
+  }
+
+  /**
+   * Derives the state of the node from the counters of its children and sets
+   * it, while holding the node's lock so that no child changes state in the
+   * meantime.
+   *
+   * @return False if the derived state is the same as the previous state, true
+   *         otherwise (including when the node had no state or when the state
+   *         can't be derived because the node has no children in the
+   *         collection).
+   */
+  boolean deriveStateFromChildren() {
+    synchronized (this) {
+      PathState previous = state;
+      PathState newState = null;
+      if (normalChildren != 0) {
+        // there's at least one NORMAL item, so the directory must be NORMAL
+        newState = PathState.NORMAL;
+      } else if (mappedChildren != 0) {
+        // only MAPPED items or IGNORED and MAPPED items, the directory is
+        // MAPPED
+        newState = PathState.MAPPED;
+      } else if (ignoredChildren != 0) {
+        // only IGNORED items, the directory is IGNORED
+        newState = PathState.IGNORED;
+      }
+      if (newState != null) {
+        setState(newState);
+      }
+      return previous == null || newState == null || previous != newState;
+    }
+  }
+
+  /*
+   * Replaces the counted state of the child by its current state. Reading the
+   * state here, instead of receiving it, makes concurrent updates of the same
+   * child converge to its latest state.
+   */
+  private synchronized void childStateChanged(PathNode child) {
+    if (getChild(child.name) != child) {
+      // the child has been removed and is no longer counted
+      return;
+    }
+    addToChildCount(child.countedState, -1);
+    child.countedState = child.state;
+    addToChildCount(child.countedState, 1);
+  }
+
+  private void addToChildCount(PathState childState, int delta) {
+    if (childState == null) {
+      return;
+    }
+    switch (childState) {
+      case MAPPED:
+        mappedChildren += delta;
+        break;
+      case IGNORED:
+        ignoredChildren += delta;
+        break;
+      default:
+        normalChildren += delta;
+        break;
+    }
+  }
+
+  /**
+   * @return True if the node is part of the collection, i.e., it has a state.
+   */
+  boolean hasState() {
+    return state != null;
+  }
+
+  SourceTreeItem getItem() {
+    return item;
+  }
+
+  void setItem(SourceTreeItem item) {
+    this.item = item;
+  }
+
+  /**
+   * @param childName
+   *          The name segment of the child.
+   * @return The child node with the name received as parameter, null if it
+   *         doesn't exist.
+   */
+  PathNode getChild(String childName) {
+    // reading the count first makes the children added before it visible
+    if (childCount == 0) {
+      return null;
+    }
+    return find(children, childName);
+  }
+
+  /**
+   * Gets the child node with the name received as parameter, creating it if it
+   * doesn't exist.
+   *
+   * @param childName
+   *          The name segment of the child.
+   * @param names
+   *          The names table of the tree, used to share the name of the child
+   *          when it's created.
+   * @return The child node.
+   */
+  PathNode getOrCreateChild(String childName, Names names) {
+    PathNode child = getChild(childName);
+    if (child != null) {
+      return child;
+    }
+    synchronized (this) {
+      PathNode[] table = children;
+      child = find(table, childName);
+      if (child == null) {
+        if ((childCount + 1) * 4 > table.length * 3) {
+          table = copyTable(table, Math.max(MIN_TABLE_SIZE, table.length * 2), null);
+          children = table;
+        }
+        child = new PathNode(names.get(childName), this);
+        insert(table, child);
+        childCount++;
+      }
+      return child;
+    }
+  }
+
+  /**
+   * Removes the child node, and consequently all of its subtree.
+   *
+   * @param childName
+   *          The name segment of the child.
+   */
+  synchronized void removeChild(String childName) {
+    PathNode removed = find(children, childName);
+    if (removed != null) {
+      // removals are rare, so the table is rebuilt instead of using tombstones.
+      // Readers that already have the old table keep seeing a coherent one
+      children = copyTable(children, children.length, removed);
+      childCount--;
+      addToChildCount(removed.countedState, -1);
+      removed.countedState = null;
+    }
+  }
+
+  /**
+   * @return The direct children of the node, including the ones without state.
+   */
+  Collection<PathNode> getChildren() {
+    if (childCount == 0) {
+      return Collections.emptyList();
+    }
+    PathNode[] table = children;
+    List<PathNode> result = new ArrayList<>(table.length);
+    for (PathNode child : table) {
+      if (child != null) {
+        result.add(child);
+      }
+    }
+    return result;
+  }
+
+  private static PathNode find(PathNode[] table, String childName) {
+    if (table.length == 0) {
+      return null;
+    }
+    int mask = table.length - 1;
+    // the table is never full, so there's always an empty slot to stop at
+    for (int i = hash(childName) & mask;; i = (i + 1) & mask) {
+      PathNode child = table[i];
+      if (child == null || child.name.equals(childName)) {
+        return child;
+      }
+    }
+  }
+
+  private static void insert(PathNode[] table, PathNode child) {
+    int mask = table.length - 1;
+    int i = hash(child.name) & mask;
+    while (table[i] != null) {
+      i = (i + 1) & mask;
+    }
+    table[i] = child;
+  }
+
+  private static PathNode[] copyTable(PathNode[] table, int size, PathNode excluded) {
+    PathNode[] result = new PathNode[size];
+    for (PathNode child : table) {
+      if (child != null && child != excluded) {
+        insert(result, child);
+      }
+    }
+    return result;
+  }
+
+  private static int hash(String childName) {
+    int h = childName.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * The name segments of the nodes of a tree, so that the nodes with the same
+   * name share the same String. Unlike {@link String#intern()}, the names are
+   * released with the tree.
+   * <p/>
+   * <p>
+   * The table is bounded: the common names are found early in any walk, so
+   * once it's full the new names are simply not shared, instead of making the
+   * table as big as the tree.
+   * </p>
+   */
+  static final class Names {
+    private static final int MAX_SIZE = 1 << 16;
+
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * @param name
+     *          A name segment.
+     * @return The shared String equal to the name, or the name itself if it
+     *         isn't shared.
+     */
+    String get(String name) {
+      String shared = names.get(name);
+      if (shared != null) {
+        return shared;
+      }
+      if (names.size() >= MAX_SIZE) {
+        return name;
+      }
+      shared = names.putIfAbsent(name, name);
+      return shared == null ? name : shared;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package org.roda.rodain.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+import org.roda.rodain.core.Constants.PathState;
+
+/**
+ * Reads and writes a binary snapshot of the path tree of {@link PathCollection}
+ * so that the states of the paths can be restored without walking the source
+ * directories again.
+ * <p/>
+ * <p>
+ * The snapshot starts with a header (magic number, version and number of
+ * entries) followed by one entry per node of the tree with a state to be
+ * restored, and per ancestor of those nodes, in depth-first order with the
+ * children sorted by name. Each entry has the index of its parent
+ * entry (-1 for the roots), the state of the node (-1 if it has no state) and
+ * the name segment of the node encoded in UTF-8. Since a parent is always
+ * written before its children, the tree is rebuilt in a single sequential pass
+ * over the memory-mapped file.
+ * </p>
+ *
+ * @author agent agent@local
+ * @since 18/10/2026.
+ */
+final class PathSnapshot {
+  private static final int MAGIC = 0x52495043; // "RIPC"
+  private static final int VERSION = 1;
+  private static final byte NO_STATE = -1;
+
+  private PathSnapshot() {
+  }
+
+  /**
+   * Writes the nodes of the tree that starts in the root received as parameter
+   * to a file. Only the nodes with one of the states to be restored are
+   * written, along with their ancestors, which are needed to rebuild their
+   * paths. The file is first written to a temporary file and then moved, so
+   * that an existing snapshot is never left half written.
+   *
+   * @param root
+   *          The root of the tree (it isn't written itself).
+   * @param file
+   *          The file where the snapshot will be written.
+   * @param statesToWrite
+   *          The states that will be restored from the snapshot. The ancestors
+   *          with other states are written without state.
+   * @throws IOException
+   *           If the file can't be written.
+   */
+  static void write(PathNode root, Path file, Set<PathState> statesToWrite) throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".part");
+    List<PathNode> nodes = new ArrayList<>();
+    List<Integer> parents = new ArrayList<>();
+    Deque<PathNode> stack = new ArrayDeque<>();
+    Deque<Integer> stackParents = new ArrayDeque<>();
+    pushChildren(root, -1, stack, stackParents);
+    while (!stack.isEmpty()) {
+      PathNode node = stack.pop();
+      int parent = stackParents.pop();
+      int index = nodes.size();
+      nodes.add(node);
+      parents.add(parent);
+      pushChildren(node, index, stack, stackParents);
+    }
+
+    // a parent is always before its children, so going backwards marks the
+    // whole ancestor chain of each node that is kept
+    boolean[] kept = new boolean[nodes.size()];
+    for (int i = nodes.size() - 1; i >= 0; i--) {
+      kept[i] |= statesToWrite.contains(nodes.get(i).getState());
+      if (kept[i] && parents.get(i) >= 0) {
+        kept[parents.get(i)] = true;
+      }
+    }
+    int[] entries = new int[nodes.size()];
+    int count = 0;
+    for (int i = 0; i < kept.length; i++) {
+      entries[i] = kept[i] ? count++ : -1;
+    }
+
+    try (DataOutputStream out = new DataOutputStream(
+      new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(count);
+      for (int i = 0; i < nodes.size(); i++) {
+        if (!kept[i]) {
+          continue;
+        }
+        PathNode node = nodes.get(i);
+        PathState state = node.getState();
+        byte[] name = node.getName().getBytes(StandardCharsets.UTF_8);
+        int parent = parents.get(i);
+        out.writeInt(parent < 0 ? -1 : entries[parent]);
+        out.writeByte(statesToWrite.contains(state) ? state.ordinal() : NO_STATE);
+        out.writeShort(name.length);
+        out.write(name);
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void pushChildren(PathNode node, int index, Deque<PathNode> stack, Deque<Integer> stackParents) {
+    List<PathNode> children = new ArrayList<>(node.getChildren());
+    // pushed in reverse order so that they're popped sorted by name
+    children.sort(Comparator.comparing(PathNode::getName).reversed());
+    for (PathNode child : children) {
+      stack.push(child);
+      stackParents.push(index);
+    }
+  }
+
+  /**
+   * Reads a snapshot, adding its nodes to the tree that starts in the root
+   * received as parameter.
+   *
+   * @param root
+   *          The root of the tree where the nodes will be added.
+   * @param names
+   *          The names table of the tree.
+   * @param file
+   *          The snapshot file.
+   * @param statesToRestore
+   *          Only the nodes with one of these states get their state restored.
+   *          The other nodes are only added to keep the structure of the tree.
+   * @return The number of nodes with a restored state.
+   * @throws IOException
+   *           If the file can't be read or isn't a valid snapshot.
+   */
+  static int read(PathNode root, PathNode.Names names, Path file, Set<PathState> statesToRestore) throws IOException {
+    PathState[] states = PathState.values();
+    int restored = 0;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Not a valid path states snapshot: " + file);
+      }
+      PathNode[] nodes = new PathNode[buffer.getInt()];
+      byte[] name = new byte[256];
+      for (int i = 0; i < nodes.length; i++) {
+        int parent = buffer.getInt();
+        byte state = buffer.get();
+        int length = buffer.getShort() & 0xFFFF;
+        if (name.length < length) {
+          name = new byte[length];
+        }
+        buffer.get(name, 0, length);
+
+        PathNode parentNode = parent < 0 ? root : nodes[parent];
+        PathNode node = parentNode.getOrCreateChild(new String(name, 0, length, StandardCharsets.UTF_8),
+          names);
+        if (state != NO_STATE && statesToRestore.contains(states[state])) {
+          node.setState(states[state]);
+          restored++;
+        }
+        nodes[i] = node;
+      }
+    } catch (RuntimeException e) {
+      // a truncated or corrupted file makes the buffer throw unchecked
+      // exceptions
+      throw new IOException("Not a valid path states snapshot: " + file, e);
+    }
+    return restored;
+  }
+}
@@ -2,7 +2,6 @@ package org.roda.rodain.core.creation;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -64,30 +63,10 @@ public class BagitSipCreator extends SimpleSipCreator implements SIPObserver, IS
   }
 
   /**
-   * Attempts to create a BagIt SIP of each SipPreview
+   * Attempts to create a BagIt SIP of the description object
    */
   @Override
-  public void run() {
-    Map<Path, Object> sips = new HashMap<>();
-    for (Sip preview : previews.keySet()) {
-      if (canceled) {
-        break;
-      }
-      Pair pathBag = createBagit(preview);
-      if (pathBag != null) {
-        sips.put((Path) pathBag.getKey(), (SIP) pathBag.getValue());
-      }
-    }
-
-    if (createReport) {
-      createReport(sips);
-    }
-
-    currentAction = I18n.t(Constants.I18N_DONE);
-  }
-
-  private Pair createBagit(Sip descriptionObject) {
-    Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+  protected Pair createSip(Sip descriptionObject) {
     // we add a timestamp to the beginning of the SIP name to avoid same name
     // conflicts
     currentSipName = descriptionObject.getTitle();
@@ -116,9 +95,7 @@ public class BagitSipCreator extends SimpleSipCreator implements SIPObserver, IS
           currentSIPsize = 0;
 
           // count files
-          for (TreeNode tn : files) {
-            currentSIPsize += tn.getFullTreePaths().size();
-          }
+          currentSIPsize = countFiles(files);
 
           for (TreeNode tn : files) {
             addFileToRepresentation(tn, new ArrayList<>(), rep);
@@ -139,11 +116,10 @@ public class BagitSipCreator extends SimpleSipCreator implements SIPObserver, IS
         list.forEach((id, content) -> metadataMap.put(Constants.CONF_K_PREFIX_METADATA + id, content));
       }
 
-      Path metadataPath = tempDir.resolve(Utils.generateRandomAndPrefixedUUID());
+      Path metadataPath = getStagingDirectory().resolve(Utils.generateRandomAndPrefixedUUID());
       bagit.addDescriptiveMetadata(BagitUtils.createBagitMetadata(metadataMap, bagit.getAncestors(), metadataPath));
 
       Path name = bagit.build(outputPath, createSipName(descriptionObject, sipNameBuilder));
-      createdSipsCount++;
       return new Pair(name, bagit);
     } catch (Exception e) {
       LOGGER.error("Error creating SIP", e);
@@ -206,8 +182,7 @@ public class BagitSipCreator extends SimpleSipCreator implements SIPObserver, IS
     String format = I18n.t(Constants.I18N_CREATIONMODALPROCESSING_EARK_PROGRESS);
     String progress = String.format(format, current, countFilesOfZip);
     currentAction = progress;
-    currentSipProgress = ((float) current) / countFilesOfZip;
-    currentSipProgress /= sipPreviewCount;
+    updateSipProgress(((float) current) / countFilesOfZip);
   }
 
   @Override
@@ -1,11 +1,15 @@
 package org.roda.rodain.core.creation;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import org.roda.rodain.core.ConfigurationManager;
+import org.roda.rodain.core.Constants;
 import org.roda.rodain.core.Constants.SipType;
 import org.roda.rodain.core.schema.Sip;
 import org.roda.rodain.core.sip.SipPreview;
@@ -17,13 +21,20 @@ import org.slf4j.LoggerFactory;
 /**
  * @author Andre Pereira apereira@keep.pt
  * @since 19/11/2015.
+ *
+ *        <p>
+ *        The SIPs are exported by a bounded number of SIP creators of the
+ *        selected type, which take the SIPs from a shared queue. The progress
+ *        of the creators is aggregated here.
+ *        </p>
  */
 public class CreateSips {
   private static final Logger LOGGER = LoggerFactory.getLogger(CreateSips.class.getName());
+  private static final int MAX_DEFAULT_WORKERS = 8;
 
   private SipType type;
   private Path outputPath;
-  private SimpleSipCreator creator;
+  private List<SimpleSipCreator> creators = new ArrayList<>();
   private SIPNameBuilder sipNameBuilder;
 
   private int sipsCount;
@@ -67,26 +78,72 @@ public class CreateSips {
     startedTime = System.currentTimeMillis();
 
     sipsCount = previews.size();
+    int workers = Math.max(1, Math.min(getWorkers(), sipsCount));
+    SipExportJobs jobs = new SipExportJobs(previews.keySet(), workers, openJournal());
+    List<SimpleSipCreator> newCreators = new ArrayList<>(workers);
+    for (int i = 0; i < workers; i++) {
+      SimpleSipCreator creator = createCreator(previews);
+      creator.setJobs(jobs);
+      newCreators.add(creator);
+    }
+    creators = newCreators;
+    LOGGER.debug("Exporting {} SIPs with {} workers", sipsCount, workers);
+    for (SimpleSipCreator creator : newCreators) {
+      creator.start();
+    }
+  }
+
+  private SipExportJournal openJournal() {
+    boolean resume = ConfigurationManager.getConfigAsBoolean(Constants.CONF_K_SIP_CREATION_RESUME, false);
+    boolean verify = ConfigurationManager.getConfigAsBoolean(Constants.CONF_K_SIP_CREATION_VERIFY_CHECKSUMS, false);
+    try {
+      return SipExportJournal.open(outputPath, type, resume, verify);
+    } catch (IOException e) {
+      // the SIPs can still be created, only the exportation can't be resumed
+      LOGGER.error("Unable to open the export journal in {}", outputPath, e);
+      return null;
+    }
+  }
+
+  private int getWorkers() {
+    // the Hungarian creator adds the alternative record ids to the shared
+    // header of each SIP, so its SIPs can't be built at the same time
+    if (type == SipType.HUNGARIAN) {
+      return 1;
+    }
+    int defaultWorkers = Math.min(Runtime.getRuntime().availableProcessors(), MAX_DEFAULT_WORKERS);
+    return ConfigurationManager.getConfigAsInteger(Constants.CONF_K_SIP_CREATION_WORKERS, defaultWorkers);
+  }
+
+  private SimpleSipCreator createCreator(Map<Sip, List<String>> previews) {
     switch (type) {
       case BAGIT:
-        creator = new BagitSipCreator(outputPath, previews, sipNameBuilder, createReport);
-        break;
+        return new BagitSipCreator(outputPath, previews, sipNameBuilder, createReport);
       case EARK:
-        creator = new EarkSipCreator(outputPath, previews, sipNameBuilder, createReport, ipHeader);
-        break;
-      case EARK2:
-        creator = new EarkSip2Creator(outputPath, previews, sipNameBuilder, createReport, ipHeader, sipAgentName,
-          sipAgentID);
-        break;
+        return new EarkSipCreator(outputPath, previews, sipNameBuilder, createReport, ipHeader);
       case HUNGARIAN:
-        creator = new HungarianSipCreator(outputPath, previews, sipNameBuilder, createReport, ipHeader);
-        break;
+        return new HungarianSipCreator(outputPath, previews, sipNameBuilder, createReport, ipHeader);
       case EARK2S:
-        creator = new ShallowSipCreator(outputPath, previews, sipNameBuilder, createReport, ipHeader, sipAgentName,
+        return new ShallowSipCreator(outputPath, previews, sipNameBuilder, createReport, ipHeader, sipAgentName,
           sipAgentID);
-        break;
+      case EARK2:
+      default:
+        return new EarkSip2Creator(outputPath, previews, sipNameBuilder, createReport, ipHeader, sipAgentName,
+          sipAgentID);
+    }
+  }
+
+  /*
+   * The creator whose SIP is shown: the first one still working, or the first
+   * one when all have finished.
+   */
+  private SimpleSipCreator getShownCreator() {
+    for (SimpleSipCreator creator : creators) {
+      if (creator.isAlive()) {
+        return creator;
+      }
     }
-    creator.start();
+    return creators.get(0);
   }
 
   /**
@@ -100,14 +157,15 @@ public class CreateSips {
    * @return The number of SIPs that have already been created.
    */
   public int getCreatedSipsCount() {
-    return creator.getCreatedSipsCount();
+    // the creators share the progress of the exportation
+    return getShownCreator().getCreatedSipsCount();
   }
 
   /**
    * @return The number of SIPs not created due to an error.
    */
   public int getErrorCount() {
-    return creator.getErrorCount();
+    return getShownCreator().getErrorCount();
   }
 
   /**
@@ -115,35 +173,54 @@ public class CreateSips {
    *         created by the total number of SIPs.
    */
   public double getProgress() {
-    return (creator.getCreatedSipsCount() / (sipsCount * 1.0)) + creator.currentSipProgress;
+    return getProgressSnapshot().getProgress();
   }
 
   /**
-   * @return The time remaining estimate of the SIP creator.
+   * @return The time remaining estimate of the exportation, in milliseconds.
    */
   public double getTimeRemainingEstimate() {
-    return creator.getTimeRemainingEstimate();
+    return getShownCreator().getTimeRemainingEstimate();
+  }
+
+  /**
+   * Reads the progress of all the SIP creators at once, so the values shown
+   * are consistent with each other.
+   *
+   * @return An immutable snapshot of the progress of the exportation.
+   */
+  public SipCreationProgress.Snapshot getProgressSnapshot() {
+    // the progress of the SIP of each creator is already divided by the number
+    // of SIPs
+    double currentSipsProgress = 0;
+    for (SimpleSipCreator creator : creators) {
+      currentSipsProgress += creator.currentSipProgress;
+    }
+    SimpleSipCreator shown = getShownCreator();
+    return shown.getProgressSnapshot(currentSipsProgress, shown.getCurrentSipName(), shown.getCurrentAction());
   }
 
   /**
    * @return The name of the SIP currently being processed.
    */
   public String getSipName() {
-    return creator.getCurrentSipName();
+    return getShownCreator().getCurrentSipName();
   }
 
   /**
    * @return The action currently being done on the SIP.
    */
   public String getAction() {
-    return creator.getCurrentAction();
+    return getShownCreator().getCurrentAction();
   }
 
   /**
-   * Halts the execution of the SIP creator.
+   * Halts the execution of all the SIP creators.
    */
   public void cancel() {
-    creator.cancel();
+    for (SimpleSipCreator creator : creators) {
+      creator.cancel();
+    }
   }
 
   public long getStartedTime() {
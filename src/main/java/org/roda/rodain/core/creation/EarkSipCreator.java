@@ -3,9 +3,7 @@ package org.roda.rodain.core.creation;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -72,28 +70,10 @@ public class EarkSipCreator extends SimpleSipCreator implements SIPObserver, ISi
   }
 
   /**
-   * Attempts to create an EARK SIP of each SipPreview
+   * Attempts to create an EARK SIP of the description object
    */
   @Override
-  public void run() {
-    Map<Path, Object> sips = new HashMap<>();
-    for (Sip preview : previews.keySet()) {
-      if (canceled) {
-        break;
-      }
-      Pair pathSIP = createEarkSip(preview);
-      if (pathSIP != null) {
-        sips.put((Path) pathSIP.getKey(), (SIP) pathSIP.getValue());
-      }
-    }
-    if (createReport) {
-      createReport(sips);
-    }
-    currentAction = I18n.t(Constants.I18N_DONE);
-  }
-
-  private Pair createEarkSip(Sip descriptionObject) {
-    Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+  protected Pair createSip(Sip descriptionObject) {
     try {
       org.roda.rodain.core.schema.IPContentType userDefinedContentType = descriptionObject instanceof SipPreview
         ? ((SipPreview) descriptionObject).getContentType()
@@ -147,7 +127,7 @@ public class EarkSipCreator extends SimpleSipCreator implements SIPObserver, ISi
           String content = descriptionObject.getMetadataWithReplaces(descObjMetadata);
           metadataPath = descObjMetadata.getPath();
           if (metadataPath == null) {
-            metadataPath = tempDir.resolve(descObjMetadata.getId());
+            metadataPath = getStagingDirectory().resolve(descObjMetadata.getId());
           }
           FileUtils.writeStringToFile(metadataPath.toFile(), content, Constants.RODAIN_DEFAULT_ENCODING);
         }
@@ -177,9 +157,7 @@ public class EarkSipCreator extends SimpleSipCreator implements SIPObserver, ISi
           currentSIPsize = 0;
 
           // count files
-          for (TreeNode tn : files) {
-            currentSIPsize += tn.getFullTreePaths().size();
-          }
+          currentSIPsize = countFiles(files);
 
           // add files to representation
           for (TreeNode tn : files) {
@@ -202,7 +180,6 @@ public class EarkSipCreator extends SimpleSipCreator implements SIPObserver, ISi
       currentAction = I18n.t(Constants.I18N_SIMPLE_SIP_CREATOR_INIT_ZIP);
       Path sipPath = earkSip.build(outputPath, createSipName(descriptionObject, sipNameBuilder));
 
-      createdSipsCount++;
       return new Pair(sipPath, earkSip);
     } catch (InterruptedException e) {
       canceled = true;
@@ -288,8 +265,7 @@ public class EarkSipCreator extends SimpleSipCreator implements SIPObserver, ISi
     String format = I18n.t(Constants.I18N_CREATIONMODALPROCESSING_EARK_PROGRESS);
     String progress = String.format(format, current, countFilesOfZip);
     currentAction = progress;
-    currentSipProgress = ((float) current) / countFilesOfZip;
-    currentSipProgress /= sipPreviewCount;
+    updateSipProgress(((float) current) / countFilesOfZip);
   }
 
   @Override
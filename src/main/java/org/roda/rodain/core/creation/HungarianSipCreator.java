@@ -5,9 +5,7 @@ import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -71,31 +69,10 @@ public class HungarianSipCreator extends SimpleSipCreator implements SIPObserver
   }
 
   /**
-   * Attempts to create an Hungarian SIP of each SipPreview
+   * Attempts to create an Hungarian SIP of the description object
    */
   @Override
-  public void run() {
-    Map<Path, Object> sips = new HashMap<>();
-    for (Sip preview : previews.keySet()) {
-      if (canceled) {
-        break;
-      }
-
-      Pair pathSIP = createHungarianSip(preview);
-      if (pathSIP != null) {
-        sips.put((Path) pathSIP.getKey(), (SIP) pathSIP.getValue());
-      }
-    }
-
-    if (createReport) {
-      createReport(sips);
-    }
-
-    currentAction = I18n.t(Constants.I18N_DONE);
-  }
-
-  private Pair createHungarianSip(Sip descriptionObject) {
-    Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+  protected Pair createSip(Sip descriptionObject) {
     try {
       org.roda.rodain.core.schema.IPContentType userDefinedContentType = descriptionObject instanceof SipPreview
         ? ((SipPreview) descriptionObject).getContentType()
@@ -146,7 +123,7 @@ public class HungarianSipCreator extends SimpleSipCreator implements SIPObserver
           String content = descriptionObject.getMetadataWithReplaces(descObjMetadata);
           metadataPath = descObjMetadata.getPath();
           if (metadataPath == null) {
-            metadataPath = tempDir.resolve(descObjMetadata.getId());
+            metadataPath = getStagingDirectory().resolve(descObjMetadata.getId());
           }
           FileUtils.writeStringToFile(metadataPath.toFile(), content, Constants.RODAIN_DEFAULT_ENCODING);
         }
@@ -170,9 +147,7 @@ public class HungarianSipCreator extends SimpleSipCreator implements SIPObserver
           currentSIPadded = 0;
           currentSIPsize = 0;
           // count files
-          for (TreeNode tn : files) {
-            currentSIPsize += tn.getFullTreePaths().size();
-          }
+          currentSIPsize = countFiles(files);
           // add files to representation
           for (TreeNode tn : files) {
             addFileToRepresentation(tn, new ArrayList<>(), rep);
@@ -212,7 +187,6 @@ public class HungarianSipCreator extends SimpleSipCreator implements SIPObserver
       }
       Path sipPath = hungarianSip.build(outputPath, createSipName(descriptionObject, sipNameBuilder));
 
-      createdSipsCount++;
       return new Pair(sipPath, hungarianSip);
     } catch (InterruptedException e) {
       canceled = true;
@@ -299,8 +273,7 @@ public class HungarianSipCreator extends SimpleSipCreator implements SIPObserver
     String format = I18n.t(Constants.I18N_CREATIONMODALPROCESSING_EARK_PROGRESS);
     String progress = String.format(format, current, countFilesOfZip);
     currentAction = progress;
-    currentSipProgress = ((float) current) / countFilesOfZip;
-    currentSipProgress /= sipPreviewCount;
+    updateSipProgress(((float) current) / countFilesOfZip);
   }
 
   @Override
@@ -1,13 +1,11 @@
 package org.roda.rodain.core.creation;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -20,6 +18,7 @@ import org.roda.rodain.core.shallowSipManager.ShallowSipUriCreator;
 import org.roda.rodain.core.shallowSipManager.UriCreator;
 import org.roda.rodain.core.sip.naming.SIPNameBuilder;
 import org.roda.rodain.core.sip.naming.SIPNameBuilderSIPS;
+import org.roda.rodain.core.utils.ChecksumCache;
 import org.roda_project.commons_ip.model.IPHeader;
 import org.roda_project.commons_ip.utils.IPException;
 import org.roda_project.commons_ip2.mets_v1_12.beans.FileType;
@@ -31,7 +30,6 @@ import org.roda_project.commons_ip2.model.IPFileInterface;
 import org.roda_project.commons_ip2.model.IPFileShallow;
 import org.roda_project.commons_ip2.model.IPRepresentation;
 import org.roda_project.commons_ip2.utils.METSUtils;
-import org.roda_project.commons_ip2.utils.ZIPUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -130,6 +128,23 @@ public class ShallowSipCreator extends SipCreator {
     }
   }
 
+  /**
+   * Computes the checksums of the files of the representation at the same
+   * time, so that they are cached when each file is added.
+   */
+  @Override
+  protected void prepareFiles(final Set<TreeNode> files) {
+    final List<Path> paths = new ArrayList<>();
+    for (TreeNode tn : files) {
+      for (Path path : tn.getFullTreePathsAsPaths()) {
+        if (Files.isRegularFile(path)) {
+          paths.add(path);
+        }
+      }
+    }
+    ChecksumCache.prefetch(paths, Collections.singleton(IPConstants.CHECKSUM_ALGORITHM));
+  }
+
   private FileType createFileType(final Path path) {
     final FileType filetype = new FileType();
 
@@ -140,15 +155,12 @@ public class ShallowSipCreator extends SipCreator {
     }
 
     final String checksumType = IPConstants.CHECKSUM_ALGORITHM;
-    final Set<String> checksumAlgorithms = new HashSet<>();
-    checksumAlgorithms.add(checksumType);
-    try (InputStream inputStream = Files.newInputStream(path)) {
-      final Map<String, String> checksums = ZIPUtils.calculateChecksums(Optional.empty(), inputStream,
-        checksumAlgorithms);
+    try {
+      final Map<String, String> checksums = ChecksumCache.get(path, Collections.singleton(checksumType));
       final String checksum = checksums.get(checksumType);
       filetype.setCHECKSUM(checksum);
       filetype.setCHECKSUMTYPE(checksumType);
-    } catch (NoSuchAlgorithmException | IOException e) {
+    } catch (IOException e) {
       // do nothing
     }
     return filetype;
@@ -5,8 +5,10 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Instant;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -27,7 +29,9 @@ import org.apache.commons.io.FileUtils;
 import org.roda.rodain.core.Constants;
 import org.roda.rodain.core.Controller;
 import org.roda.rodain.core.I18n;
+import org.roda.rodain.core.Pair;
 import org.roda.rodain.core.report.InventoryReportCreator;
+import org.roda.rodain.core.rules.TreeNode;
 import org.roda.rodain.core.schema.Sip;
 import org.roda.rodain.core.sip.naming.SIPNameBuilder;
 import org.slf4j.Logger;
@@ -44,6 +48,7 @@ import org.xml.sax.InputSource;
  */
 public abstract class SimpleSipCreator extends Thread {
   private static final Logger LOGGER = LoggerFactory.getLogger(SimpleSipCreator.class.getName());
+  private static final String STAGING_DIRECTORY_PREFIX = ".rodain-sip-";
 
   protected static final String actionCreatingFolders = I18n.t(Constants.I18N_SIMPLE_SIP_CREATOR_CREATING_STRUCTURE);
   protected static final String actionCopyingData = I18n.t(Constants.I18N_SIMPLE_SIP_CREATOR_COPYING_DATA);
@@ -56,31 +61,39 @@ public abstract class SimpleSipCreator extends Thread {
   protected final Map<Sip, List<String>> previews;
   protected final int sipPreviewCount;
 
-  protected int createdSipsCount = 0;
-  protected String currentSipName;
-  protected String currentAction;
+  // read by the UI while the SIPs are being created
+  protected volatile String currentSipName;
+  protected volatile String currentAction;
 
-  // ETA
+  // size of the files of the current SIP and the part already reported as
+  // processed
   protected long sipSize;
   protected long sipTransferedSize;
-  protected long sipTransferedTime;
-  protected long transferedSize;
-  protected long transferedTime;
-  protected long allSipsSize;
-  protected Instant lastInstant;
-  protected Instant sipStartInstant;
 
-  protected boolean canceled = false;
-  protected float currentSipProgress;
+  protected volatile boolean canceled = false;
+  protected volatile float currentSipProgress;
 
   protected Set<Sip> unsuccessful;
 
+  private SipExportJobs jobs;
+  // the identity of the current SIP and its records in the journal of the
+  // previous runs, when the journal is kept
+  private SipExportJournal.Identity sipIdentity;
+  private SipExportJournal.Entry sipEntry;
+  // the creator isn't interrupted while it writes to the journal, guarded by
+  // interruptLock
+  private final Object interruptLock = new Object();
+  private boolean writingJournal = false;
+  // where the files generated for the current SIP are written, created when
+  // first needed
+  private Path stagingDirectory;
+
   /**
    * Creates a simple SIP exporter.
    * <p/>
    * <p>
-   * This object doesn't export any SIPs, it must be extended and the run()
-   * method overridden.
+   * This object doesn't export any SIPs, it must be extended and the
+   * createSip() method implemented.
    * </p>
    *
    * @param outputPath
@@ -94,7 +107,7 @@ public abstract class SimpleSipCreator extends Thread {
     this.previews = previews;
     sipPreviewCount = previews.size();
 
-    unsuccessful = new HashSet<>();
+    unsuccessful = Collections.synchronizedSet(new HashSet<>());
 
     try {
       agentName = String.format(Constants.SIP_AGENT_NAME_FORMAT, Controller.getCurrentVersion());
@@ -104,17 +117,19 @@ public abstract class SimpleSipCreator extends Thread {
   }
 
   /**
-   * @return The number of SIPs that have already been created.
+   * @return The number of SIPs of the exportation that have already been
+   *         created.
    */
   public int getCreatedSipsCount() {
-    return createdSipsCount;
+    return getJobs().getProgress().getCreatedSipsCount();
   }
 
   /**
-   * @return The number of SIPs that haven't been created due to an error.
+   * @return The number of SIPs of the exportation that haven't been created
+   *         due to an error.
    */
   public int getErrorCount() {
-    return unsuccessful.size();
+    return getJobs().getProgress().getErrorCount();
   }
 
   /**
@@ -191,22 +206,213 @@ public abstract class SimpleSipCreator extends Thread {
    */
   public void cancel() {
     canceled = true;
-    interrupt();
+    if (jobs != null) {
+      jobs.cancel();
+    }
+    synchronized (interruptLock) {
+      if (!writingJournal) {
+        interrupt();
+      }
+    }
+  }
+
+  /**
+   * Writes to the journal without being interrupted, as an interruption closes
+   * the files being read or written. If the creator has been cancelled, it's
+   * interrupted afterwards.
+   */
+  private void writeJournal(Runnable write) {
+    synchronized (interruptLock) {
+      writingJournal = true;
+    }
+    boolean interrupted = Thread.interrupted();
+    try {
+      write.run();
+    } finally {
+      synchronized (interruptLock) {
+        writingJournal = false;
+      }
+      if (interrupted || canceled) {
+        interrupt();
+      }
+    }
   }
 
   /**
-   * This method must be overridden.
+   * Shares the SIPs of the exportation with other SIP creators. Must be called
+   * before the creator is started.
+   *
+   * @param jobs
+   *          The SIPs of the exportation
+   */
+  void setJobs(SipExportJobs jobs) {
+    this.jobs = jobs;
+  }
+
+  private synchronized SipExportJobs getJobs() {
+    if (jobs == null) {
+      jobs = new SipExportJobs(previews.keySet(), 1, null);
+    }
+    return jobs;
+  }
+
+  /**
+   * Creates the SIPs until there are none left or the creator is cancelled.
+   * The SIPs created by a previous run of the exportation are skipped. The
+   * last creator to finish creates the report.
    */
   @Override
   public void run() {
+    SipExportJobs sipJobs = getJobs();
+    SipCreationProgress progress = sipJobs.getProgress();
+    SipExportJournal journal = sipJobs.getJournal();
+    Sip preview;
+    while (!canceled && (preview = sipJobs.next()) != null) {
+      if (journal != null) {
+        sipIdentity = SipExportJournal.identify(preview);
+        sipEntry = journal.claim(sipIdentity);
+        Path[] completed = new Path[1];
+        writeJournal(() -> completed[0] = journal.getCompleted(sipEntry, sipIdentity));
+        if (completed[0] != null) {
+          progress.sipSkipped();
+          continue;
+        }
+      }
+      sipSize = 0;
+      sipTransferedSize = 0;
+      currentSipProgress = 0;
+      progress.sipStarted();
+      Pair pathSIP;
+      try {
+        pathSIP = createSip(preview);
+      } finally {
+        deleteStagingDirectory();
+      }
+      // whatever hasn't been reported while packaging
+      progress.addProcessedBytes(sipSize - sipTransferedSize);
+      currentSipProgress = 0;
+      if (pathSIP != null) {
+        sipJobs.addCreated((Path) pathSIP.getKey(), pathSIP.getValue());
+        if (journal != null) {
+          writeJournal(() -> journal.created(sipIdentity, (Path) pathSIP.getKey()));
+        }
+        progress.sipCreated();
+      } else if (unsuccessful.contains(preview)) {
+        if (journal != null) {
+          writeJournal(() -> journal.failed(sipIdentity));
+        }
+        progress.sipFailed();
+      }
+    }
+    if (sipJobs.workerFinished() && createReport) {
+      createReport(sipJobs.getCreated());
+    }
+    currentAction = I18n.t(Constants.I18N_DONE);
+  }
 
+  /**
+   * Gets the directory where the files generated for the current SIP, like the
+   * descriptive metadata, are written before being packaged. It's created in
+   * the output folder, so those files don't fill the temporary folder of the
+   * system and are written to the same disk as the SIP, and it's deleted after
+   * the SIP is built.
+   *
+   * @return The staging directory of the current SIP
+   * @throws IOException
+   *           If the directory can't be created
+   */
+  protected Path getStagingDirectory() throws IOException {
+    if (stagingDirectory == null) {
+      stagingDirectory = Files.createTempDirectory(outputPath, STAGING_DIRECTORY_PREFIX);
+    }
+    return stagingDirectory;
+  }
+
+  private void deleteStagingDirectory() {
+    if (stagingDirectory != null) {
+      deleteDirectory(stagingDirectory);
+      stagingDirectory = null;
+    }
+  }
+
+  /**
+   * Counts the files of the nodes and adds their size to the size of the
+   * current SIP.
+   *
+   * @param nodes
+   *          The root nodes of the content of a representation
+   * @return The number of files
+   */
+  protected int countFiles(Set<TreeNode> nodes) {
+    int files = 0;
+    long size = 0;
+    for (TreeNode tn : nodes) {
+      for (Path path : tn.getFullTreePathsAsPaths()) {
+        try {
+          BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+          if (!attrs.isDirectory()) {
+            files++;
+            size += attrs.size();
+          }
+        } catch (IOException e) {
+          LOGGER.debug("Unable to read the attributes of {}", path, e);
+        }
+      }
+    }
+    sipSize += size;
+    getJobs().getProgress().addSipBytes(size);
+    return files;
+  }
+
+  /**
+   * Updates the progress of the current SIP while it's being packaged.
+   *
+   * @param fraction
+   *          The part of the files of the SIP that have been packaged
+   */
+  protected void updateSipProgress(float fraction) {
+    currentSipProgress = fraction / sipPreviewCount;
+    // the packaging only reports the number of files, so the bytes are
+    // estimated with the size of the whole SIP
+    long transfered = (long) (sipSize * (double) fraction);
+    if (transfered > sipTransferedSize) {
+      getJobs().getProgress().addProcessedBytes(transfered - sipTransferedSize);
+      sipTransferedSize = transfered;
+    }
+  }
+
+  /**
+   * Creates an immutable snapshot of the progress of the exportation.
+   *
+   * @param currentSipsProgress
+   *          The progress of the SIPs being created, as a fraction of all the
+   *          SIPs
+   * @param sipName
+   *          The name of the SIP shown as being processed
+   * @param action
+   *          The action shown as being done
+   * @return The snapshot
+   */
+  SipCreationProgress.Snapshot getProgressSnapshot(double currentSipsProgress, String sipName, String action) {
+    return getJobs().getProgress().snapshot(currentSipsProgress, sipName, action);
   }
 
+  /**
+   * Creates the SIP of a description object. Called from the thread of the
+   * creator, one SIP at a time.
+   *
+   * @param descriptionObject
+   *          The description object to be exported
+   * @return A pair with the path and the created SIP, or null if the SIP
+   *         wasn't created.
+   */
+  protected abstract Pair createSip(Sip descriptionObject);
+
   /**
    * @return The time remaining estimate of the SIP creator.
    */
   public double getTimeRemainingEstimate() {
-    return -1;
+    return getJobs().getProgress().getTimeRemainingEstimate();
   }
 
   public void createReport(Map<Path, Object> sips) {
@@ -214,9 +420,29 @@ public abstract class SimpleSipCreator extends Thread {
     reportCreator.start(sips);
   }
 
+  /**
+   * Creates the name of the SIP, or reuses the name given by a previous run of
+   * the exportation, so the SIP replaces the file it left. A new name is
+   * reserved for the exportation, so that the SIPs created at the same time by
+   * other creators never get the same name.
+   *
+   * @param sip
+   *          The SIP
+   * @param sipNameBuilder
+   *          The builder of the names of the SIPs
+   * @return The name of the SIP
+   */
   public String createSipName(Sip sip, SIPNameBuilder sipNameBuilder) {
-    String name = sipNameBuilder.build(sip);
-    return Controller.encodeId(name);
+    SipExportJournal journal = getJobs().getJournal();
+    String name = journal == null || sipEntry == null ? null : sipEntry.getName();
+    if (name == null) {
+      name = getJobs().reserveName(Controller.encodeId(sipNameBuilder.build(sip)));
+    }
+    if (journal != null) {
+      String sipName = name;
+      writeJournal(() -> journal.started(sipIdentity, sipName));
+    }
+    return name;
   }
 
 }
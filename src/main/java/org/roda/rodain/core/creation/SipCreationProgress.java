@@ -0,0 +1,233 @@
+package org.roda.rodain.core.creation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of an exportation, updated by all the SIP creators that work on
+ * it and read by the UI.
+ * <p/>
+ * <p>
+ * The creators report the size of the files of each SIP when they start it and
+ * the bytes processed while the SIP is packaged. The time remaining is the
+ * estimate of the bytes still to be processed divided by an exponentially
+ * smoothed throughput, so a slow or fast moment doesn't make the estimate jump.
+ * The bytes of the SIPs that haven't been started are estimated with the
+ * average size of the SIPs started so far.
+ * </p>
+ *
+ * @author agent agent@local
+ * @since 18/10/2026.
+ */
+public final class SipCreationProgress {
+  // weight of the newest throughput sample
+  private static final double SMOOTHING = 0.2;
+  // in milliseconds
+  private static final long SAMPLE_INTERVAL = 1000;
+
+  private final int sipsCount;
+  private final long startedTime;
+  private final AtomicInteger created = new AtomicInteger();
+  private final AtomicInteger errors = new AtomicInteger();
+  private final AtomicInteger startedSips = new AtomicInteger();
+  private final AtomicInteger skippedSips = new AtomicInteger();
+  private final AtomicLong startedSipsBytes = new AtomicLong();
+  private final AtomicLong processedBytes = new AtomicLong();
+
+  // throughput samples, guarded by this
+  private long lastSampleTime;
+  private long lastSampleBytes;
+  private double throughput = -1; // in bytes per millisecond
+
+  SipCreationProgress(int sipsCount) {
+    this(sipsCount, System.currentTimeMillis());
+  }
+
+  SipCreationProgress(int sipsCount, long startedTime) {
+    this.sipsCount = sipsCount;
+    this.startedTime = startedTime;
+    lastSampleTime = startedTime;
+  }
+
+  void sipStarted() {
+    startedSips.incrementAndGet();
+  }
+
+  /**
+   * @param bytes
+   *          The size of files found in the SIP being started
+   */
+  void addSipBytes(long bytes) {
+    startedSipsBytes.addAndGet(bytes);
+  }
+
+  void addProcessedBytes(long bytes) {
+    processedBytes.addAndGet(bytes);
+  }
+
+  void sipCreated() {
+    created.incrementAndGet();
+  }
+
+  /**
+   * Counts a SIP created by a previous run of the exportation. It isn't part of
+   * the work left.
+   */
+  void sipSkipped() {
+    skippedSips.incrementAndGet();
+    created.incrementAndGet();
+  }
+
+  void sipFailed() {
+    errors.incrementAndGet();
+  }
+
+  int getCreatedSipsCount() {
+    return created.get();
+  }
+
+  int getErrorCount() {
+    return errors.get();
+  }
+
+  /**
+   * @return The time remaining estimate in milliseconds, or -1 if there isn't
+   *         enough information yet.
+   */
+  double getTimeRemainingEstimate() {
+    return getTimeRemainingEstimate(System.currentTimeMillis());
+  }
+
+  double getTimeRemainingEstimate(long now) {
+    long processed = processedBytes.get();
+    double bytesPerMilli = sampleThroughput(now, processed);
+
+    int started = startedSips.get();
+    long startedBytes = startedSipsBytes.get();
+    if (started == 0) {
+      return -1;
+    }
+    int skipped = skippedSips.get();
+    if (startedBytes == 0) {
+      // SIPs without files, estimate with the number of SIPs
+      int finished = created.get() + errors.get() - skipped;
+      if (finished <= 0) {
+        return -1;
+      }
+      return (sipsCount - skipped - finished) * ((now - startedTime) / (double) finished);
+    }
+    if (bytesPerMilli <= 0) {
+      return -1;
+    }
+    double estimatedTotal = startedBytes + (sipsCount - skipped - started) * (startedBytes / (double) started);
+    return Math.max(0, estimatedTotal - processed) / bytesPerMilli;
+  }
+
+  /*
+   * Adds a throughput sample when enough time has passed since the last one.
+   */
+  private synchronized double sampleThroughput(long now, long processed) {
+    long elapsed = now - lastSampleTime;
+    if (elapsed >= SAMPLE_INTERVAL) {
+      double sample = (processed - lastSampleBytes) / (double) elapsed;
+      throughput = throughput < 0 ? sample : SMOOTHING * sample + (1 - SMOOTHING) * throughput;
+      lastSampleTime = now;
+      lastSampleBytes = processed;
+    }
+    return throughput;
+  }
+
+  /**
+   * Creates an immutable snapshot of the progress.
+   *
+   * @param currentSipsProgress
+   *          The progress of the SIPs being created, as a fraction of all the
+   *          SIPs
+   * @param sipName
+   *          The name of the SIP shown as being processed
+   * @param action
+   *          The action shown as being done
+   * @return The snapshot
+   */
+  Snapshot snapshot(double currentSipsProgress, String sipName, String action) {
+    int createdCount = created.get();
+    double progress = sipsCount == 0 ? 1 : createdCount / (double) sipsCount + currentSipsProgress;
+    return new Snapshot(sipsCount, createdCount, errors.get(), Math.min(1, progress), processedBytes.get(),
+      getTimeRemainingEstimate(), startedTime, sipName, action);
+  }
+
+  /**
+   * The progress of an exportation at a given moment.
+   */
+  public static final class Snapshot {
+    private final int sipsCount;
+    private final int createdSipsCount;
+    private final int errorCount;
+    private final double progress;
+    private final long processedBytes;
+    private final double timeRemainingEstimate;
+    private final long startedTime;
+    private final String sipName;
+    private final String action;
+
+    Snapshot(int sipsCount, int createdSipsCount, int errorCount, double progress, long processedBytes,
+      double timeRemainingEstimate, long startedTime, String sipName, String action) {
+      this.sipsCount = sipsCount;
+      this.createdSipsCount = createdSipsCount;
+      this.errorCount = errorCount;
+      this.progress = progress;
+      this.processedBytes = processedBytes;
+      this.timeRemainingEstimate = timeRemainingEstimate;
+      this.startedTime = startedTime;
+      this.sipName = sipName;
+      this.action = action;
+    }
+
+    public int getSipsCount() {
+      return sipsCount;
+    }
+
+    public int getCreatedSipsCount() {
+      return createdSipsCount;
+    }
+
+    public int getErrorCount() {
+      return errorCount;
+    }
+
+    public double getProgress() {
+      return progress;
+    }
+
+    public long getProcessedBytes() {
+      return processedBytes;
+    }
+
+    /**
+     * @return The time remaining estimate in milliseconds, or -1 if it can't be
+     *         estimated yet.
+     */
+    public double getTimeRemainingEstimate() {
+      return timeRemainingEstimate;
+    }
+
+    public long getStartedTime() {
+      return startedTime;
+    }
+
+    public String getSipName() {
+      return sipName;
+    }
+
+    public String getAction() {
+      return action;
+    }
+
+    /**
+     * @return True if all the SIPs have been created or have failed.
+     */
+    public boolean isFinished() {
+      return createdSipsCount + errorCount == sipsCount;
+    }
+  }
+}
@@ -3,9 +3,7 @@ package org.roda.rodain.core.creation;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -129,28 +127,10 @@ public abstract class SipCreator extends SimpleSipCreator implements SIPObserver
   }
 
   /**
-   * Attempts to create an EARK SIP of each SipPreview.
+   * Attempts to create an EARK SIP of the description object.
    */
   @Override
-  public void run() {
-    final Map<Path, Object> sips = new HashMap<>();
-    for (Sip preview : previews.keySet()) {
-      if (canceled) {
-        break;
-      }
-      final Pair pathSIP = createEarkSip(preview);
-      if (pathSIP != null) {
-        sips.put((Path) pathSIP.getKey(), (SIP) pathSIP.getValue());
-      }
-    }
-    if (createReport) {
-      createReport(sips);
-    }
-    currentAction = I18n.t(Constants.I18N_DONE);
-  }
-
-  protected Pair createEarkSip(final Sip descriptionObject) {
-    final Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+  protected Pair createSip(final Sip descriptionObject) {
     try {
       final org.roda.rodain.core.schema.IPContentType userDefinedContentType = descriptionObject instanceof SipPreview
         ? ((SipPreview) descriptionObject).getContentType()
@@ -206,7 +186,7 @@ public abstract class SipCreator extends SimpleSipCreator implements SIPObserver
           final String content = descriptionObject.getMetadataWithReplaces(descObjMetadata);
           metadataPath = descObjMetadata.getPath();
           if (metadataPath == null) {
-            metadataPath = tempDir.resolve(descObjMetadata.getId());
+            metadataPath = getStagingDirectory().resolve(descObjMetadata.getId());
           }
           FileUtils.writeStringToFile(metadataPath.toFile(), content, Constants.RODAIN_DEFAULT_ENCODING);
         }
@@ -230,9 +210,8 @@ public abstract class SipCreator extends SimpleSipCreator implements SIPObserver
           currentSIPsize = 0;
 
           // count files
-          for (TreeNode tn : files) {
-            currentSIPsize += tn.getFullTreePaths().size();
-          }
+          currentSIPsize = countFiles(files);
+          prepareFiles(files);
 
           // add files to representation
           for (TreeNode tn : files) {
@@ -259,7 +238,6 @@ public abstract class SipCreator extends SimpleSipCreator implements SIPObserver
       final Path sipPath = earkSip.build(outputPath, createSipName(descriptionObject, sipNameBuilder),
         sipNameBuilder instanceof SIPNameBuilderSIPS ? IPEnums.SipType.EARK2S : IPEnums.SipType.EARK2);
 
-      createdSipsCount++;
       return new Pair(sipPath, earkSip);
     } catch (final InterruptedException e) {
       canceled = true;
@@ -292,6 +270,17 @@ public abstract class SipCreator extends SimpleSipCreator implements SIPObserver
 
   protected abstract void addFileToRepresentation(TreeNode tn, List<String> relativePath, IPRepresentation rep);
 
+  /**
+   * Called with the files of each representation before they are added to it.
+   * Does nothing by default.
+   *
+   * @param files
+   *          The root nodes of the content of the representation
+   */
+  protected void prepareFiles(final Set<TreeNode> files) {
+    // do nothing
+  }
+
   protected void addDocToSip(final TreeNode tn, final List<String> relativePath, final SIP earkSip) {
     if (Files.isDirectory(tn.getPath())) {
       // add this directory to the path list
@@ -343,8 +332,7 @@ public abstract class SipCreator extends SimpleSipCreator implements SIPObserver
   public void sipBuildPackagingCurrentStatus(final int current) {
     final String format = I18n.t(Constants.I18N_CREATIONMODALPROCESSING_EARK_PROGRESS);
     currentAction = String.format(format, current, countFilesOfZip);
-    currentSipProgress = ((float) current) / countFilesOfZip;
-    currentSipProgress /= sipPreviewCount;
+    updateSipProgress(((float) current) / countFilesOfZip);
   }
 
   @Override
@@ -0,0 +1,127 @@
+package org.roda.rodain.core.creation;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.roda.rodain.core.schema.Sip;
+
+/**
+ * The SIPs of an exportation, shared by the SIP creators that work on it.
+ * <p/>
+ * <p>
+ * Each SIP is an independent job: the creators take the next SIP until there
+ * are none left, so a slow SIP only holds one of the workers. The SIPs that
+ * have been created are collected so that the last worker to finish can create
+ * the report of the whole exportation. The progress of the exportation is
+ * also shared.
+ * </p>
+ * <p>
+ * The names of the SIPs are reserved here before they are built, so that two
+ * SIPs given the same name by different creators at the same time (e.g. names
+ * with the date, down to the millisecond) don't overwrite each other's file.
+ * </p>
+ *
+ * @author agent agent@local
+ * @since 18/10/2026.
+ */
+final class SipExportJobs {
+  private final Queue<Sip> pending;
+  private final Map<Path, Object> created = Collections.synchronizedMap(new HashMap<>());
+  private final AtomicInteger runningWorkers;
+  private final SipCreationProgress progress;
+  private final SipExportJournal journal;
+  // guarded by itself
+  private final Set<String> reservedNames = new HashSet<>();
+
+  /**
+   * @param sips
+   *          The SIPs to be exported
+   * @param workers
+   *          The number of SIP creators that will take jobs
+   * @param journal
+   *          The journal of the exportation, can be null
+   */
+  SipExportJobs(Collection<Sip> sips, int workers, SipExportJournal journal) {
+    pending = new ConcurrentLinkedQueue<>(sips);
+    runningWorkers = new AtomicInteger(workers);
+    progress = new SipCreationProgress(sips.size());
+    this.journal = journal;
+    if (journal != null) {
+      // the names given by a previous run are kept for their SIPs
+      reservedNames.addAll(journal.getSipNames());
+    }
+  }
+
+  /**
+   * @return The journal of the exportation, or null if it isn't kept.
+   */
+  SipExportJournal getJournal() {
+    return journal;
+  }
+
+  SipCreationProgress getProgress() {
+    return progress;
+  }
+
+  /**
+   * @return The next SIP to be exported, or null if there are none left.
+   */
+  Sip next() {
+    return pending.poll();
+  }
+
+  /**
+   * Reserves a name for a new SIP of the exportation. If the name has already
+   * been reserved, a numeric suffix is added to it.
+   *
+   * @param name
+   *          The name created for the SIP
+   * @return The name reserved for the SIP
+   */
+  String reserveName(String name) {
+    synchronized (reservedNames) {
+      String reserved = name;
+      for (int i = 1; !reservedNames.add(reserved); i++) {
+        reserved = name + "-" + i;
+      }
+      return reserved;
+    }
+  }
+
+  void addCreated(Path path, Object sip) {
+    created.put(path, sip);
+  }
+
+  Map<Path, Object> getCreated() {
+    return created;
+  }
+
+  /**
+   * Drops the SIPs that haven't been started.
+   */
+  void cancel() {
+    pending.clear();
+  }
+
+  /**
+   * Closes the journal when the last worker finishes.
+   *
+   * @return True if the worker that called this method was the last one
+   *         running.
+   */
+  boolean workerFinished() {
+    boolean last = runningWorkers.decrementAndGet() == 0;
+    if (last && journal != null) {
+      journal.close();
+    }
+    return last;
+  }
+}
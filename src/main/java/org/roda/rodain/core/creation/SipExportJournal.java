@@ -0,0 +1,405 @@
+package org.roda.rodain.core.creation;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.roda.rodain.core.Constants.SipType;
+import org.roda.rodain.core.rules.TreeNode;
+import org.roda.rodain.core.schema.DescriptiveMetadata;
+import org.roda.rodain.core.schema.Sip;
+import org.roda.rodain.core.sip.SipPreview;
+import org.roda.rodain.core.sip.SipRepresentation;
+import org.roda.rodain.core.utils.ChecksumCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Records, in the output folder of an exportation, the state of each SIP, so
+ * that an exportation that has been interrupted can be resumed.
+ * <p/>
+ * <p>
+ * The journal is a file with one JSON object per line, only appended to. A SIP
+ * is recorded as started with the name it's given, and as created with the
+ * path and size of the built file, which is forced to disk. When the
+ * exportation is resumed, the SIPs created before whose files are still intact
+ * are skipped, and the SIPs that were only started are built again with the
+ * same name, replacing the partially written file. The checksum of the built
+ * files is only computed, and checked, when asked for, as it reads each file
+ * again.
+ * </p>
+ * <p>
+ * The ids of the SIPs are created again in each session, so the SIPs are
+ * identified by a key made of their title, level and the paths of their files,
+ * along with the format of the exportation. Each record also has the
+ * fingerprint of the content of the SIP, its metadata and the size and
+ * modification time of its files, and a SIP whose content has changed since it
+ * was created is built again. When several SIPs of an exportation have the same
+ * key, the records of the previous runs are only used by one of them.
+ * </p>
+ *
+ * @author agent agent@local
+ * @since 18/10/2026.
+ */
+final class SipExportJournal implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SipExportJournal.class.getName());
+  static final String FILE_NAME = "rodain-export-journal.jsonl";
+  static final String CHECKSUM_ALGORITHM = "SHA-256";
+  private static final Set<String> CHECKSUM_ALGORITHMS = Collections.singleton(CHECKSUM_ALGORITHM);
+  private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+  private static final String EVENT_STARTED = "STARTED";
+  private static final String EVENT_CREATED = "CREATED";
+  private static final String EVENT_FAILED = "FAILED";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final SipType type;
+  private final boolean verifyChecksums;
+  // the last state of each SIP recorded by the previous runs, by key. Guarded
+  // by this
+  private final Map<String, Entry> previous = new HashMap<>();
+  private final FileOutputStream output;
+
+  private SipExportJournal(Path file, SipType type, boolean resume, boolean verifyChecksums) throws IOException {
+    this.type = type;
+    this.verifyChecksums = verifyChecksums;
+    boolean tornLine = false;
+    if (resume && Files.exists(file)) {
+      tornLine = read(file);
+    }
+    // unlike a file channel, the stream isn't closed when the thread writing to
+    // it is interrupted
+    output = new FileOutputStream(file.toFile(), resume);
+    if (tornLine) {
+      // the next records must not be appended to the incomplete line
+      output.write('\n');
+    }
+  }
+
+  /**
+   * Opens the journal of an output folder.
+   *
+   * @param outputPath
+   *          The output folder of the exportation
+   * @param type
+   *          The format of the SIPs
+   * @param resume
+   *          If true, the SIPs recorded by the previous runs are kept, otherwise
+   *          the journal starts empty
+   * @param verifyChecksums
+   *          If true, the checksum of the files of the created SIPs is checked
+   *          before they are skipped, otherwise only their size
+   * @return The journal
+   * @throws IOException
+   *           If the journal can't be read or created
+   */
+  static SipExportJournal open(Path outputPath, SipType type, boolean resume, boolean verifyChecksums)
+    throws IOException {
+    return new SipExportJournal(outputPath.resolve(FILE_NAME), type, resume, verifyChecksums);
+  }
+
+  /*
+   * Returns true if the last line of the journal is incomplete.
+   */
+  private boolean read(Path file) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        JsonNode node;
+        try {
+          node = objectMapper.readTree(line);
+        } catch (IOException e) {
+          // the last line can be incomplete if the application stopped while
+          // writing it
+          LOGGER.debug("Ignoring journal line {}", line, e);
+          continue;
+        }
+        if (node == null || !type.name().equals(node.path("type").asText())) {
+          continue;
+        }
+        String key = node.path("key").asText();
+        if (key.isEmpty()) {
+          continue;
+        }
+        Entry entry = previous.computeIfAbsent(key, k -> new Entry());
+        String event = node.path("event").asText();
+        if (EVENT_STARTED.equals(event)) {
+          entry.name = node.path("name").asText();
+          entry.path = null;
+        } else if (EVENT_CREATED.equals(event)) {
+          entry.path = Paths.get(node.path("path").asText());
+          entry.size = node.path("size").asLong();
+          entry.fingerprint = node.path("fingerprint").asText(null);
+          entry.checksum = node.path("checksum").asText(null);
+        } else if (EVENT_FAILED.equals(event)) {
+          entry.path = null;
+        }
+      }
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+      if (raf.length() == 0) {
+        return false;
+      }
+      raf.seek(raf.length() - 1);
+      return raf.read() != '\n';
+    }
+  }
+
+  /**
+   * @return The names given to the SIPs by the previous runs.
+   */
+  synchronized Set<String> getSipNames() {
+    Set<String> names = new HashSet<>();
+    for (Entry entry : previous.values()) {
+      if (entry.name != null) {
+        names.add(entry.name);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Takes the records of the previous runs for a SIP, so they aren't used by
+   * another SIP with the same key.
+   *
+   * @param identity
+   *          The identity of the SIP
+   * @return The records of the SIP, or null if it hasn't been started before.
+   */
+  synchronized Entry claim(Identity identity) {
+    return previous.remove(identity.key);
+  }
+
+  /**
+   * Checks if the SIP has been created by a previous run from the same content
+   * and its file is still intact.
+   *
+   * @param entry
+   *          The records of the SIP, can be null
+   * @param identity
+   *          The identity of the SIP, with the fingerprint of its current
+   *          content
+   * @return The path of the created SIP, or null if it must be created.
+   */
+  Path getCompleted(Entry entry, Identity identity) {
+    if (entry == null || entry.path == null) {
+      return null;
+    }
+    if (!identity.fingerprint.equals(entry.fingerprint)) {
+      LOGGER.info("The content of {} has changed, the SIP will be created again", entry.path);
+      return null;
+    }
+    try {
+      if (!Files.isRegularFile(entry.path) || Files.size(entry.path) != entry.size) {
+        return null;
+      }
+      if (verifyChecksums && (entry.checksum == null || !entry.checksum.equalsIgnoreCase(
+        ChecksumCache.compute(entry.path, CHECKSUM_ALGORITHMS).get(CHECKSUM_ALGORITHM)))) {
+        LOGGER.info("The checksum of {} has changed, the SIP will be created again", entry.path);
+        return null;
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Unable to verify {}", entry.path, e);
+      return null;
+    }
+    return entry.path;
+  }
+
+  void started(Identity identity, String name) {
+    Map<String, Object> line = line(EVENT_STARTED, identity);
+    line.put("name", name);
+    write(line, false);
+  }
+
+  void created(Identity identity, Path path) {
+    Map<String, Object> line = line(EVENT_CREATED, identity);
+    line.put("path", path.toAbsolutePath().toString());
+    line.put("fingerprint", identity.fingerprint);
+    try {
+      line.put("size", Files.size(path));
+      if (verifyChecksums) {
+        // computed before the journal is locked, the file can be big
+        line.put("checksumType", CHECKSUM_ALGORITHM);
+        line.put("checksum", ChecksumCache.compute(path, CHECKSUM_ALGORITHMS).get(CHECKSUM_ALGORITHM));
+      }
+    } catch (IOException e) {
+      LOGGER.error("Unable to record the creation of {}", path, e);
+      return;
+    }
+    write(line, true);
+  }
+
+  void failed(Identity identity) {
+    write(line(EVENT_FAILED, identity), false);
+  }
+
+  private Map<String, Object> line(String event, Identity identity) {
+    Map<String, Object> line = new LinkedHashMap<>();
+    line.put("event", event);
+    line.put("type", type.name());
+    line.put("key", identity.key);
+    return line;
+  }
+
+  private synchronized void write(Map<String, Object> line, boolean force) {
+    try {
+      output.write((objectMapper.writeValueAsString(line) + "\n").getBytes(StandardCharsets.UTF_8));
+      if (force) {
+        output.getFD().sync();
+      }
+    } catch (IOException e) {
+      LOGGER.error("Unable to write to the export journal", e);
+    }
+  }
+
+  /**
+   * Computes the key and the fingerprint of a SIP. The key is made of its
+   * title, level and content type and the paths of its files, which don't
+   * change between sessions. The fingerprint adds its metadata and the size
+   * and modification time of its files. The files themselves aren't read.
+   *
+   * @param sip
+   *          The SIP
+   * @return The identity of the SIP
+   */
+  static Identity identify(Sip sip) {
+    // the order of the representations and of the files isn't kept
+    Map<String, String> files = new TreeMap<>();
+    if (sip instanceof SipPreview) {
+      SipPreview preview = (SipPreview) sip;
+      for (SipRepresentation representation : preview.getRepresentations()) {
+        addFiles(files, representation.getName() + "/", representation.getFiles());
+      }
+      addFiles(files, "documentation/", preview.getDocumentation());
+    }
+
+    MessageDigest key = newDigest();
+    update(key, sip.getTitle());
+    update(key, sip.getDescriptionlevel());
+    update(key, String.valueOf(sip.isUpdateSIP()));
+    update(key, String.valueOf(sip.getContentType()));
+    for (String file : files.keySet()) {
+      update(key, file);
+    }
+    String keyHex = toHex(key.digest());
+
+    MessageDigest fingerprint = newDigest();
+    update(fingerprint, keyHex);
+    for (DescriptiveMetadata metadata : sip.getMetadata()) {
+      update(fingerprint,
+        metadata.getMetadataType() + " " + metadata.getMetadataVersion() + " " + metadata.getTemplateType());
+      update(fingerprint, sip.getMetadataWithReplaces(metadata));
+    }
+    for (String attributes : files.values()) {
+      update(fingerprint, attributes);
+    }
+    return new Identity(keyHex, toHex(fingerprint.digest()));
+  }
+
+  /*
+   * Adds the paths of the nodes with the size and modification time of the
+   * files.
+   */
+  private static void addFiles(Map<String, String> files, String prefix, Set<TreeNode> nodes) {
+    List<Path> paths = new ArrayList<>();
+    for (TreeNode node : nodes) {
+      node.addFullTreePaths(paths);
+    }
+    for (Path path : paths) {
+      String attributes;
+      try {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        attributes = attrs.isDirectory() ? "" : attrs.size() + " " + attrs.lastModifiedTime().toMillis();
+      } catch (IOException e) {
+        // a missing file is part of the fingerprint too
+        attributes = "missing";
+      }
+      files.put(prefix + path, attributes);
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform has SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void update(MessageDigest digest, String part) {
+    digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : bytes) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      output.close();
+    } catch (IOException e) {
+      LOGGER.debug("Error closing the export journal", e);
+    }
+  }
+
+  /**
+   * The key and the fingerprint of a SIP, computed once for each SIP.
+   */
+  static final class Identity {
+    private final String key;
+    private final String fingerprint;
+
+    private Identity(String key, String fingerprint) {
+      this.key = key;
+      this.fingerprint = fingerprint;
+    }
+  }
+
+  /**
+   * The last state of a SIP recorded by the previous runs.
+   */
+  static final class Entry {
+    private String name;
+    // null unless the last record of the SIP is its creation
+    private Path path;
+    private long size;
+    private String fingerprint;
+    // null unless the checksums were verified when the SIP was created
+    private String checksum;
+
+    /**
+     * @return The name given to the SIP.
+     */
+    String getName() {
+      return name;
+    }
+  }
+}
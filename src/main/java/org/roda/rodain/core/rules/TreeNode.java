@@ -1,14 +1,15 @@
 package org.roda.rodain.core.rules;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Observable;
-import java.util.Observer;
 import java.util.Set;
+import java.util.function.Consumer;
+
+import org.roda.rodain.core.utils.DirectoryCache;
 
 /**
  * @author Andre Pereira apereira@keep.pt
@@ -18,10 +19,21 @@ import java.util.Set;
  *        Used in the Handlers to make a representation of the documents tree in
  *        a SIP
  *        </p>
+ *        <p>
+ *        Most of the nodes of a tree are files, so the nodes only have a map of
+ *        children after the first child is added and don't keep observers.
+ *        The changes are reported to the listener of the root of the tree (or
+ *        of the nearest ancestor with a listener), once per change made through
+ *        the public methods.
+ *        </p>
  */
-public class TreeNode extends Observable {
+public class TreeNode {
   private Path path;
+  private TreeNode parent;
+  // null while the node has no children
   private Map<String, TreeNode> files;
+  // normally only set in the roots of the content of a SIP
+  private ContentListener listener;
 
   /**
    * Creates a new TreeNode object.
@@ -31,25 +43,33 @@ public class TreeNode extends Observable {
    */
   public TreeNode(Path path) {
     this.path = path;
-    files = new HashMap<>();
   }
 
   /**
    * Flattens the TreeNode, i.e., moves all it's child nodes to one level.
    */
   public void flatten() {
+    flattenChildren();
+    changed();
+  }
+
+  private void flattenChildren() {
+    if (files == null) {
+      return;
+    }
     Map<String, TreeNode> newFiles = new HashMap<>();
-    for (String file : files.keySet()) {
-      if (Files.isDirectory(Paths.get(file))) {
-        files.get(file).flatten(); // flatten the children
-        newFiles.putAll(files.get(file).getOnlyFiles()); // add its files to the
-        // new Map
+    for (TreeNode tn : files.values()) {
+      if (DirectoryCache.isDirectory(tn.path)) {
+        tn.flattenChildren(); // flatten the children
+        // add its files to the new Map
+        for (TreeNode file : tn.getOnlyFiles().values()) {
+          file.parent = this;
+          newFiles.put(file.getPath().toString(), file);
+        }
       } else
-        newFiles.put(file, files.get(file));
+        newFiles.put(tn.getPath().toString(), tn);
     }
-    files = newFiles;
-
-    changed();
+    files = newFiles.isEmpty() ? null : newFiles;
   }
 
   /**
@@ -58,9 +78,7 @@ public class TreeNode extends Observable {
    */
   public Set<String> getFullTreePaths() {
     Set<String> result = new HashSet<>();
-    result.add(path.toString());
-    for (TreeNode tn : files.values())
-      result.addAll(tn.getFullTreePaths());
+    forEachNode(tn -> result.add(tn.path.toString()));
     return result;
   }
 
@@ -70,17 +88,37 @@ public class TreeNode extends Observable {
    */
   public Set<Path> getFullTreePathsAsPaths() {
     Set<Path> result = new HashSet<>();
-    result.add(path);
-    for (TreeNode tn : files.values())
-      result.addAll(tn.getFullTreePathsAsPaths());
+    addFullTreePaths(result);
     return result;
   }
 
+  /**
+   * Adds all the paths from the tree that starts in the TreeNode where this
+   * method is called to a collection, so that the paths of several trees can be
+   * gathered without intermediate sets.
+   *
+   * @param result
+   *          The collection where the paths are added
+   */
+  public void addFullTreePaths(Collection<Path> result) {
+    forEachNode(tn -> result.add(tn.path));
+  }
+
+  // visits the whole tree, so the paths are added to a single set instead of
+  // merging the sets of each sub tree
+  private void forEachNode(Consumer<TreeNode> action) {
+    action.accept(this);
+    if (files != null) {
+      for (TreeNode tn : files.values())
+        tn.forEachNode(action);
+    }
+  }
+
   /**
    * @return The direct children of the TreeNode.
    */
   public Map<String, TreeNode> getChildren() {
-    return files;
+    return files == null ? Collections.emptyMap() : files;
   }
 
   /**
@@ -89,9 +127,12 @@ public class TreeNode extends Observable {
    */
   public Map<String, TreeNode> getOnlyFiles() {
     Map<String, TreeNode> result = new HashMap<>();
-    for (String file : files.keySet()) {
-      if (!Files.isDirectory(Paths.get(file))) // add to result if it's a file
-        result.put(file, files.get(file));
+    if (files != null) {
+      for (Map.Entry<String, TreeNode> entry : files.entrySet()) {
+        // add to result if it's a file
+        if (!DirectoryCache.isDirectory(entry.getValue().path))
+          result.put(entry.getKey(), entry.getValue());
+      }
     }
     return result;
   }
@@ -107,22 +148,35 @@ public class TreeNode extends Observable {
    */
   public Set<String> ignoreContent(Set<Path> paths) {
     Set<String> result = new HashSet<>();
+    if (removeContent(paths, result)) {
+      changed();
+    }
+    return result;
+  }
+
+  /*
+   * Returns true if any node of the tree was removed.
+   */
+  private boolean removeContent(Set<Path> paths, Set<String> result) {
     if (paths.contains(path)) {
       // this item and all its children
-      result.addAll(getFullTreePaths());
-    } else {
+      forEachNode(tn -> result.add(tn.path.toString()));
+      return false;
+    }
+    boolean removed = false;
+    if (files != null) {
       Set<Path> toRemove = new HashSet<>();
       for (TreeNode tn : files.values()) {
-        result.addAll(tn.ignoreContent(paths));
+        removed |= tn.removeContent(paths, result);
         if (paths.contains(tn.path))
           toRemove.add(tn.path);
       }
-      if (!toRemove.isEmpty()) {
-        for (Path p : toRemove)
-          remove(p);
+      for (Path p : toRemove) {
+        removeChild(p);
+        removed = true;
       }
     }
-    return result;
+    return removed;
   }
 
   /**
@@ -132,7 +186,13 @@ public class TreeNode extends Observable {
    *          The map with the new TreeNodes
    */
   public void addAll(Map<String, TreeNode> map) {
-    files.putAll(map);
+    if (map.isEmpty()) {
+      return;
+    }
+    // copied first, the map can be the children of one of the nodes
+    for (TreeNode tn : map.values().toArray(new TreeNode[map.size()])) {
+      addChild(tn);
+    }
     changed();
   }
 
@@ -143,7 +203,7 @@ public class TreeNode extends Observable {
    *          The new TreeNode to be added
    */
   public void add(TreeNode node) {
-    files.put(node.getPath().toString(), node);
+    addChild(node);
     changed();
   }
 
@@ -155,10 +215,18 @@ public class TreeNode extends Observable {
    *          added, the method creates a new TreeNode with this path.
    */
   public void add(Path node) {
-    files.put(node.toString(), new TreeNode(node));
+    addChild(new TreeNode(node));
     changed();
   }
 
+  private void addChild(TreeNode node) {
+    if (files == null) {
+      files = new HashMap<>(4);
+    }
+    node.parent = this;
+    files.put(node.getPath().toString(), node);
+  }
+
   /**
    * Removes the TreeNode with the path received as parameter.
    *
@@ -167,12 +235,25 @@ public class TreeNode extends Observable {
    * @return The removed TreeNode
    */
   public TreeNode remove(Path path) {
-    TreeNode result = files.get(path.toString());
-    files.remove(path.toString());
+    TreeNode result = removeChild(path);
     changed();
     return result;
   }
 
+  private TreeNode removeChild(Path childPath) {
+    if (files == null) {
+      return null;
+    }
+    TreeNode result = files.remove(childPath.toString());
+    if (files.isEmpty()) {
+      files = null;
+    }
+    if (result != null && result.parent == this) {
+      result.parent = null;
+    }
+    return result;
+  }
+
   /**
    * @return The node's path
    */
@@ -184,7 +265,7 @@ public class TreeNode extends Observable {
    * @return A set of the node's children's paths.
    */
   public Set<String> getKeys() {
-    return files.keySet();
+    return getChildren().keySet();
   }
 
   /**
@@ -193,25 +274,43 @@ public class TreeNode extends Observable {
    * @return The TreeNode with the path received as parameter
    */
   public TreeNode get(String key) {
-    return files.get(key);
+    return files == null ? null : files.get(key);
   }
 
+  /*
+   * Reports the change to the nearest listener, starting in this node.
+   */
   private void changed() {
-    setChanged();
-    notifyObservers();
+    for (TreeNode node = this; node != null; node = node.parent) {
+      if (node.listener != null) {
+        node.listener.contentChanged(this);
+        return;
+      }
+    }
   }
 
   /**
-   * Adds a new observer to the TreeNode and all its children
+   * Sets the listener of the changes made to the TreeNode and all the nodes
+   * under it. The nodes added later are also covered, since the listener is
+   * looked up through the parents of the changed node.
    *
-   * @param o
-   *          The Observer to be added
+   * @param contentListener
+   *          The listener
    */
-  @Override
-  public void addObserver(Observer o) {
-    super.addObserver(o);
-    for (TreeNode tn : files.values()) {
-      tn.addObserver(o);
-    }
+  public void setContentListener(ContentListener contentListener) {
+    listener = contentListener;
+  }
+
+  /**
+   * Receives the changes of the content of a tree of TreeNodes.
+   */
+  public interface ContentListener {
+    /**
+     * Called after the children of a node have been changed.
+     *
+     * @param node
+     *          The node where the change was made
+     */
+    void contentChanged(TreeNode node);
   }
 }
@@ -1,27 +1,36 @@
 package org.roda.rodain.core.rules.filters;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
-import java.util.HashSet;
 
 import org.roda.rodain.core.Constants.PathState;
 import org.roda.rodain.core.PathCollection;
 
 /**
+ * Filters the paths that are ignored or mapped, either by the rule that uses
+ * the filter or in the PathCollection.
+ * <p/>
+ * <p>
+ * The ignored and mapped paths of the rule are kept in a trie of name segments,
+ * so checking if a path or any of its ancestors is in the lists is a single
+ * walk down the segments of the path, without creating a string for each
+ * ancestor.
+ * </p>
+ *
  * @author Andre Pereira apereira@keep.pt
  * @since 20-10-2015.
  */
 public class ContentFilter {
-  private HashSet<String> ignored;
-  private HashSet<String> mapped;
+  private static final char SEPARATOR = File.separatorChar;
+  private final Node root;
 
   /**
    * Creates a new ContentFilter object
    */
   public ContentFilter() {
-    ignored = new HashSet<>();
-    mapped = new HashSet<>();
+    root = new Node(null);
   }
 
   /**
@@ -31,7 +40,7 @@ public class ContentFilter {
    *          The path to be added to the ignored paths list.
    */
   public void addIgnored(String st) {
-    ignored.add(st);
+    add(st);
   }
 
   /**
@@ -40,8 +49,10 @@ public class ContentFilter {
    * @param col
    *          The collection of paths to be added to the ignored paths list.
    */
-  public void addAllIgnored(Collection col) {
-    ignored.addAll(col);
+  public void addAllIgnored(Collection<String> col) {
+    for (String st : col) {
+      add(st);
+    }
   }
 
   /**
@@ -51,7 +62,7 @@ public class ContentFilter {
    *          The path to be added to the mapped paths list.
    */
   public void addMapped(String st) {
-    mapped.add(st);
+    add(st);
   }
 
   /**
@@ -60,8 +71,26 @@ public class ContentFilter {
    * @param col
    *          The collection of paths to be added to the mapped paths list.
    */
-  public void addAllMapped(Collection col) {
-    mapped.addAll(col);
+  public void addAllMapped(Collection<String> col) {
+    for (String st : col) {
+      add(st);
+    }
+  }
+
+  /*
+   * Ignored and mapped paths are filtered the same way, so they share the trie.
+   * The filter is filled before it's handed to the visitors, so it isn't
+   * synchronized.
+   */
+  private void add(String st) {
+    Node node = root;
+    int from = 0, length = segmentsLength(st);
+    while (from < length || from == 0) {
+      int to = segmentEnd(st, from, length);
+      node = node.getOrCreateChild(st.substring(from, to));
+      from = to + 1;
+    }
+    node.terminal = true;
   }
 
   /**
@@ -70,6 +99,7 @@ public class ContentFilter {
    * <p/>
    * <p>
    * Additionally, checks if any ancestor of the path is in one of the lists.
+   * The PathCollection and the IgnoredFilter are only read, never changed.
    * </p>
    *
    * @param path
@@ -79,35 +109,121 @@ public class ContentFilter {
    *         otherwise.
    */
   public boolean filter(String path) {
-    boolean result = false;
-    if (ignored.contains(path) || mapped.contains(path)
-      || PathCollection.getState(Paths.get(path)) != PathState.NORMAL
-      || IgnoredFilter.isIgnored(Paths.get(path))) {
-      result = true;
-    } else if (path.startsWith("\\\\")) {
-      //for UNC paths iterations throw the subs will bring an exception
-      return false;
-    } else {
-      int index = 0, end = path.length(), fromIndex = 0;
-      String separator = File.separator;
-
-      while (index < end && !result) { // while we still have string to read and
-        // haven't found a matching path
-        index = path.indexOf(separator, fromIndex); // get the path until the
-        // slash we're checking
-        if (index == -1) {
-          break;
-        } else {
-          String sub = path.substring(0, index);
-          fromIndex = index + 1; // move the starting index for the next
-          // iteration so it's after the slash
-          if (ignored.contains(sub) || mapped.contains(sub) || IgnoredFilter.isIgnored(Paths.get(sub))) {
-            result = true;
+    if (isInTrie(path)) {
+      return true;
+    }
+    Path p = Paths.get(path);
+    return PathCollection.getState(p) != PathState.NORMAL || IgnoredFilter.isIgnored(p);
+  }
+
+  private boolean isInTrie(String path) {
+    Node node = root;
+    int from = 0, length = segmentsLength(path);
+    while (from < length || from == 0) {
+      int to = segmentEnd(path, from, length);
+      node = node.getChild(path, from, to);
+      if (node == null) {
+        return false;
+      }
+      if (node.terminal) {
+        return true;
+      }
+      from = to + 1;
+    }
+    return false;
+  }
+
+  /*
+   * The length of the path without a trailing separator, so that "/a/" and
+   * "/a" have the same segments.
+   */
+  private static int segmentsLength(String path) {
+    int length = path.length();
+    if (length > 1 && path.charAt(length - 1) == SEPARATOR) {
+      length--;
+    }
+    return length;
+  }
+
+  private static int segmentEnd(String path, int from, int length) {
+    int to = path.indexOf(SEPARATOR, from);
+    return to == -1 || to > length ? length : to;
+  }
+
+  /*
+   * A name segment of the trie. The children are kept in an open addressing
+   * table so they can be looked up with a region of the path, without creating
+   * a substring.
+   */
+  private static final class Node {
+    private final String name;
+    private Node[] children;
+    private int size;
+    private boolean terminal;
+
+    private Node(String name) {
+      this.name = name;
+    }
+
+    private Node getChild(String path, int from, int to) {
+      Node[] table = children;
+      if (table == null) {
+        return null;
+      }
+      int length = to - from;
+      int mask = table.length - 1;
+      for (int i = hash(path, from, to) & mask;; i = (i + 1) & mask) {
+        Node child = table[i];
+        if (child == null) {
+          return null;
+        }
+        if (child.name.length() == length && child.name.regionMatches(0, path, from, length)) {
+          return child;
+        }
+      }
+    }
+
+    private Node getOrCreateChild(String childName) {
+      Node child = getChild(childName, 0, childName.length());
+      if (child == null) {
+        if (children == null || (size + 1) * 2 > children.length) {
+          resize();
+        }
+        child = new Node(childName);
+        insert(children, child);
+        size++;
+      }
+      return child;
+    }
+
+    private void resize() {
+      Node[] table = new Node[children == null ? 4 : children.length * 2];
+      if (children != null) {
+        for (Node child : children) {
+          if (child != null) {
+            insert(table, child);
           }
         }
       }
+      children = table;
+    }
+
+    private static void insert(Node[] table, Node child) {
+      int mask = table.length - 1;
+      int i = hash(child.name, 0, child.name.length()) & mask;
+      while (table[i] != null) {
+        i = (i + 1) & mask;
+      }
+      table[i] = child;
     }
-    return result;
-  }
 
+    // same as String.hashCode(), spread to use the low bits of the table
+    private static int hash(String st, int from, int to) {
+      int h = 0;
+      for (int i = from; i < to; i++) {
+        h = 31 * h + st.charAt(i);
+      }
+      return h ^ (h >>> 16);
+    }
+  }
 }
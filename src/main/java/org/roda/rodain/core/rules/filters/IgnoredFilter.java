@@ -3,14 +3,17 @@ package org.roda.rodain.core.rules.filters;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
+import org.roda.rodain.core.utils.DirectoryCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,8 +24,11 @@ import org.slf4j.LoggerFactory;
 public class IgnoredFilter {
   private static final Logger LOGGER = LoggerFactory.getLogger(IgnoredFilter.class.getName());
 
-  private static Set<String> rules = new HashSet<>();
-  private static Map<String, Pattern> rulesPatterns = new HashMap<>();
+  private static final int MAX_MEMOIZED_PATHS = 100000;
+  private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+  // in the order they were added
+  private static Set<String> rules = new LinkedHashSet<>();
+  private static volatile CompiledRules compiledRules = new CompiledRules(rules);
 
   private IgnoredFilter() {
   }
@@ -33,9 +39,10 @@ public class IgnoredFilter {
    * @param rule
    *          The new ignore rule.
    */
-  public static void addIgnoreRule(String rule) {
+  public static synchronized void addIgnoreRule(String rule) {
     if (rules.add(rule)) {
-      rulesPatterns.put(rule, Pattern.compile(rule));
+      // the memoized verdicts are replaced along with the rules
+      compiledRules = new CompiledRules(rules);
     }
   }
 
@@ -48,42 +55,160 @@ public class IgnoredFilter {
    */
   public static boolean isIgnored(Path path) {
     boolean result = false;
-    if (!rules.isEmpty()) {
-      int i = path.getNameCount() - 1;
-      for (; i >= 0; i--) {
-        if (isIgnored(path.getName(i).toString())) {
-          result = true;
-          break;
-        }
-      }
-
-      if (!result) {
-        result = !containsAtLeastOneNotIgnoredFile(path);
-      }
+    CompiledRules current = compiledRules;
+    if (!current.isEmpty()) {
+      result = isNameIgnored(current, path) || !containsAtLeastOneNotIgnoredFile(path);
     }
     return result;
   }
 
   /**
-   * Checks if a value has been ignored by a rule set in the configuration file
-   * of the application.
+   * Same as {@link #isIgnored(Path)}, for a path whose type is already known,
+   * so that its attributes aren't read again.
    * 
-   * @param value
-   *          The value to be filtered
-   * @return True if the value is ignored, false otherwise.
+   * @param path
+   *          The path to be filtered
+   * @param directory
+   *          True if the path is a directory
+   * @return True if the path matches one filter, false otherwise
    */
-  private static boolean isIgnored(String value) {
+  public static boolean isIgnored(Path path, boolean directory) {
     boolean result = false;
-    for (String rule : rules) {
-      Pattern p = rulesPatterns.get(rule);
-      Matcher m = p.matcher(value);
-      if (m.matches()) {
-        result = true;
-        break;
+    CompiledRules current = compiledRules;
+    if (!current.isEmpty()) {
+      result = isNameIgnored(current, path) || (directory && isEmptyDirectory(path));
+    }
+    return result;
+  }
+
+  /*
+   * Checks the name of the path and the names of all its ancestors. The verdict
+   * of the parent is memoized, so the paths of a directory only test their own
+   * name.
+   */
+  private static boolean isNameIgnored(CompiledRules current, Path path) {
+    Path fileName = path.getFileName();
+    if (fileName != null && current.matches(fileName.toString())) {
+      return true;
+    }
+    Path parent = path.getParent();
+    if (parent == null) {
+      return false;
+    }
+    Boolean parentIgnored = current.getMemoized(parent);
+    if (parentIgnored == null) {
+      parentIgnored = isNameIgnored(current, parent);
+      current.memoize(parent, parentIgnored);
+    }
+    return parentIgnored;
+  }
+
+  /**
+   * The ignore rules compiled to be tested in a single pass. Rules that only
+   * match a literal name, or a literal prefix followed by ".*", are tested with
+   * a hash lookup or startsWith; the other rules are combined in a single
+   * alternation pattern.
+   * <p>
+   * The verdicts of the names of the directories and all their ancestors are
+   * memoized with the rules, so they're dropped when the rules change. When the
+   * memo is full it's replaced by an empty one instead of being cleared, so
+   * that a verdict is never added to a memo that is being cleared.
+   * </p>
+   */
+  static final class CompiledRules {
+    private final Set<String> literals = new HashSet<>();
+    private final List<String> prefixes = new ArrayList<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+    private volatile Map<Path, Boolean> ignoredDirectories = new ConcurrentHashMap<>();
+
+    CompiledRules(Set<String> rules) {
+      List<String> regexRules = new ArrayList<>();
+      for (String rule : rules) {
+        String literal;
+        if ((literal = unescapeLiteral(rule)) != null) {
+          literals.add(literal);
+        } else if (rule.endsWith(".*") && (literal = unescapeLiteral(rule.substring(0, rule.length() - 2))) != null) {
+          prefixes.add(literal);
+        } else {
+          regexRules.add(rule);
+        }
+      }
+      if (!regexRules.isEmpty()) {
+        StringBuilder combined = new StringBuilder();
+        boolean backReferences = false;
+        for (String rule : regexRules) {
+          if (combined.length() > 0) {
+            combined.append('|');
+          }
+          combined.append("(?:").append(rule).append(')');
+          backReferences |= rule.matches(".*\\\\(\\d|k<).*");
+        }
+        if (backReferences) {
+          // the groups are numbered across the whole combined pattern
+          for (String rule : regexRules) {
+            patterns.add(Pattern.compile(rule));
+          }
+        } else {
+          patterns.add(Pattern.compile(combined.toString()));
+        }
       }
     }
 
-    return result;
+    /*
+     * Returns the literal matched by the rule, or null if the rule uses any
+     * regular expression construct other than escaped metacharacters.
+     */
+    private static String unescapeLiteral(String rule) {
+      StringBuilder result = new StringBuilder(rule.length());
+      for (int i = 0; i < rule.length(); i++) {
+        char c = rule.charAt(i);
+        if (c == '\\') {
+          if (i + 1 == rule.length() || REGEX_METACHARACTERS.indexOf(rule.charAt(i + 1)) < 0) {
+            return null;
+          }
+          result.append(rule.charAt(++i));
+        } else if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+          return null;
+        } else {
+          result.append(c);
+        }
+      }
+      return result.toString();
+    }
+
+    boolean isEmpty() {
+      return literals.isEmpty() && prefixes.isEmpty() && patterns.isEmpty();
+    }
+
+    private Boolean getMemoized(Path directory) {
+      return ignoredDirectories.get(directory);
+    }
+
+    private void memoize(Path directory, boolean ignored) {
+      Map<Path, Boolean> memo = ignoredDirectories;
+      if (memo.size() >= MAX_MEMOIZED_PATHS) {
+        memo = new ConcurrentHashMap<>();
+        ignoredDirectories = memo;
+      }
+      memo.put(directory, ignored);
+    }
+
+    boolean matches(String value) {
+      if (literals.contains(value)) {
+        return true;
+      }
+      for (String prefix : prefixes) {
+        if (value.startsWith(prefix)) {
+          return true;
+        }
+      }
+      for (Pattern pattern : patterns) {
+        if (pattern.matcher(value).matches()) {
+          return true;
+        }
+      }
+      return false;
+    }
   }
 
   /**
@@ -93,27 +218,37 @@ public class IgnoredFilter {
    */
   public static boolean containsAtLeastOneNotIgnoredFile(Path path) {
     boolean res = true;
-    if (Files.isDirectory(path)) {
-      try {
-        if (isDirectoryEmpty(path)) {
-          res = false;
-        } else {
-          // FIXME 20170309 hsilva: the following is very expensive to use
-          // ValidFilesCounter visitor = new ValidFilesCounter();
-          // Files.walkFileTree(path, visitor);
-          // int validFiles = visitor.getValidFiles();
-          // if (validFiles == 0) {
-          // res = false;
-          // }
-        }
-      } catch (Exception e) {
-        LOGGER.debug("Error while checking if directory contains at least on valid file: {}", path, e);
+    if (DirectoryCache.isDirectory(path)) {
+      res = !isEmptyDirectory(path);
+    }
+    return res;
+  }
+
+  private static boolean isEmptyDirectory(Path path) {
+    boolean res = false;
+    try {
+      if (isDirectoryEmpty(path)) {
+        res = true;
+      } else {
+        // FIXME 20170309 hsilva: the following is very expensive to use
+        // ValidFilesCounter visitor = new ValidFilesCounter();
+        // Files.walkFileTree(path, visitor);
+        // int validFiles = visitor.getValidFiles();
+        // if (validFiles == 0) {
+        // res = true;
+        // }
       }
+    } catch (Exception e) {
+      LOGGER.debug("Error while checking if directory contains at least on valid file: {}", path, e);
     }
     return res;
   }
 
   private static boolean isDirectoryEmpty(Path path) {
+    List<DirectoryCache.Entry> cached = DirectoryCache.getListing(path);
+    if (cached != null) {
+      return cached.isEmpty();
+    }
     boolean isEmpty = true;
     Stream<Path> list = null;
     try {
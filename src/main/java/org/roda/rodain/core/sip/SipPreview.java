@@ -1,13 +1,10 @@
 package org.roda.rodain.core.sip;
 
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Observable;
-import java.util.Observer;
 import java.util.Set;
 
 import org.roda.rodain.core.ConfigurationManager;
@@ -24,12 +21,15 @@ import org.slf4j.LoggerFactory;
  * @author Andre Pereira apereira@keep.pt
  * @since 01-10-2015.
  */
-public class SipPreview extends Sip implements Observer {
+public class SipPreview extends Sip implements TreeNode.ContentListener {
   private static final Logger LOGGER = LoggerFactory.getLogger(SipPreview.class.getName());
   private Set<SipRepresentation> representations;
   private Set<TreeNode> documentation;
   private boolean contentModified = false;
   private boolean removed = false;
+  // set while the content is changed by the SIP itself, so that the observers
+  // are notified once at the end
+  private boolean changingContent = false;
 
   /**
    * Creates a new SipPreview object.
@@ -61,11 +61,13 @@ public class SipPreview extends Sip implements Observer {
     }
 
     // set paths as mapped
+    List<Path> mappedPaths = new ArrayList<>();
     for (SipRepresentation sr : representations) {
       for (TreeNode tn : sr.getFiles()) {
-        PathCollection.addPath(tn.getPath(), PathState.MAPPED);
+        mappedPaths.add(tn.getPath());
       }
     }
+    PathCollection.applyStates(mappedPaths, PathState.MAPPED);
   }
 
   /**
@@ -88,13 +90,22 @@ public class SipPreview extends Sip implements Observer {
   public void ignoreContent(Set<Path> paths) {
     Set<String> ignored = new HashSet<>();
     Set<TreeNode> toRemove = new HashSet<>();
-    for (SipRepresentation sr : representations) {
-      for (TreeNode tn : sr.getFiles()) {
-        ignored.addAll(tn.ignoreContent(paths));
-        if (paths.contains(tn.getPath()))
-          toRemove.add(tn);
+    boolean modified = contentModified;
+    changingContent = true;
+    try {
+      for (SipRepresentation sr : representations) {
+        for (TreeNode tn : sr.getFiles()) {
+          ignored.addAll(tn.ignoreContent(paths));
+          if (paths.contains(tn.getPath()))
+            toRemove.add(tn);
+        }
+        sr.getFiles().removeAll(toRemove);
       }
-      sr.getFiles().removeAll(toRemove);
+    } finally {
+      changingContent = false;
+    }
+    if (contentModified && !modified) {
+      contentChanged(null);
     }
 
     PathCollection.addPaths(ignored, PathState.NORMAL);
@@ -130,29 +141,14 @@ public class SipPreview extends Sip implements Observer {
    * Removes the SIP, setting its content as NORMAL.
    */
   public void removeSIP() {
-    float paths = 0, removedPaths = 0;
-    // prepare
-    for (SipRepresentation sr : representations) {
-      for (TreeNode tn : sr.getFiles()) {
-        paths += tn.getFullTreePaths().size();
-      }
-    }
-    // remove
-    int update = 0;
+    // remove, setting all the paths of the SIP as NORMAL in a single batch
+    Set<Path> paths = new HashSet<>();
     for (SipRepresentation sr : representations) {
       for (TreeNode tn : sr.getFiles()) {
-        for (String path : tn.getFullTreePaths()) {
-          PathCollection.addPath(Paths.get(path), PathState.NORMAL);
-          removedPaths++;
-          update++;
-          if (update >= 10) {
-            update = 0;
-            setChanged();
-            notifyObservers(removedPaths / paths);
-          }
-        }
+        tn.addFullTreePaths(paths);
       }
     }
+    PathCollection.applyStates(paths, PathState.NORMAL);
     removed = true;
     setChanged();
     notifyObservers();
@@ -164,18 +160,16 @@ public class SipPreview extends Sip implements Observer {
   }
 
   /**
-   * Sets the content modified state as true if it receives a notification from
-   * any TreeNode in the files Set.
+   * Sets the content modified state as true when it receives a notification
+   * from any TreeNode in the files Set, and notifies the observers.
    *
-   * @param o
-   *          The observable object that is modified.
-   * @param arg
-   *          The arguments sent by the observable object.
+   * @param node
+   *          The node that was modified.
    */
   @Override
-  public void update(Observable o, Object arg) {
-    if (o instanceof TreeNode) {
-      contentModified = true;
+  public void contentChanged(TreeNode node) {
+    contentModified = true;
+    if (!changingContent) {
       setChanged();
       notifyObservers();
     }
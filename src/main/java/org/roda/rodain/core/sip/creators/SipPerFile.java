@@ -1,14 +1,9 @@
 package org.roda.rodain.core.sip.creators;
 
 import java.io.IOException;
-import java.nio.file.AccessDeniedException;
 import java.nio.file.FileSystems;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
-import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Set;
 
@@ -18,6 +13,7 @@ import org.roda.rodain.core.Constants.PathState;
 import org.roda.rodain.core.PathCollection;
 import org.roda.rodain.core.rules.TreeNode;
 import org.roda.rodain.core.rules.filters.ContentFilter;
+import org.roda.rodain.core.utils.DirectoryCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,42 +46,40 @@ public class SipPerFile extends SipPreviewCreator {
     super(id, filters, metadataOption, metadataType, metadataPath, templateType, metadataVersion);
   }
 
+  /**
+   * Registers the directory and its entries in the PathCollection, unless
+   * they're filtered. This is done during the walk to avoid walking the tree
+   * twice.
+   * <p/>
+   * <p>
+   * The entries are registered before any of them is mapped. Otherwise, once
+   * the first file became a SIP, the state of the directory would be derived as
+   * MAPPED and its entries not registered yet would be filtered with it.
+   * </p>
+   *
+   * @param path
+   *          The path of the directory.
+   * @param attrs
+   *          The attributes of the directory.
+   */
   @Override
-  public void setStartPath(String path) {
+  public void preVisitDirectory(Path path, BasicFileAttributes attrs) {
+    if (filter(path))
+      return;
+    PathCollection.simpleAddPath(path);
     try {
-      Files.walkFileTree(Paths.get(path), new SimpleFileVisitor<Path>() {
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-          if (!filter(file))
-            PathCollection.simpleAddPath(file);
-          return isTerminated();
-        }
-
-        @Override
-        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-          if (!filter(dir))
-            PathCollection.simpleAddPath(dir);
-          return isTerminated();
-        }
-      });
-    } catch (AccessDeniedException e) {
-      LOGGER.info("Access denied to file", e);
+      // usually cached, the parallel walk has just listed the directory
+      for (DirectoryCache.Entry entry : DirectoryCache.list(path)) {
+        if (!filter(entry.getPath()))
+          PathCollection.simpleAddPath(entry.getPath());
+      }
     } catch (IOException e) {
-      LOGGER.error("Error walking the file tree", e);
-    }
-  }
-
-  private FileVisitResult isTerminated() {
-    // terminate if the thread has been interrupted
-    if (Thread.interrupted() || cancelled) {
-      return FileVisitResult.TERMINATE;
+      LOGGER.debug("Unable to list {}", path, e);
     }
-    return FileVisitResult.CONTINUE;
   }
 
   /**
-   * This method is empty in this class, but it's defined because of the
-   * TreeVisitor interface.
+   * Maps the directory if none of its children changed its state.
    *
    * @param path
    *          The path of the directory.
@@ -95,6 +89,7 @@ public class SipPerFile extends SipPreviewCreator {
     if (PathCollection.getState(path) == PathState.NORMAL) {
       PathCollection.addPath(path, PathState.MAPPED);
     }
+    super.postVisitDirectory(path);
   }
 
   @Override
@@ -114,7 +109,8 @@ public class SipPerFile extends SipPreviewCreator {
   }
 
   /**
-   * Creates a new SIP with the file being visited.
+   * Creates a new SIP with the file, registering it in the PathCollection if
+   * it's the start path of the rule.
    *
    * @param path
    *          The path of the file being visited.
@@ -126,6 +122,7 @@ public class SipPerFile extends SipPreviewCreator {
     if (filter(path) || cancelled) {
       return;
     }
+    PathCollection.simpleAddPath(path);
 
     TreeNode node = new TreeNode(path);
     createSip(path, node);
@@ -98,6 +98,7 @@ public class SipPerSelection extends SipPreviewCreator {
     if (selectedPaths.contains(path.toString())) {
       createSip(path, node);
     }
+    super.postVisitDirectory(path);
 
     long now = System.currentTimeMillis();
     if (now - lastUIUpdate > UPDATEFREQUENCY) {
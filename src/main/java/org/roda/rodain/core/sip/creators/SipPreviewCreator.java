@@ -1,6 +1,5 @@
 package org.roda.rodain.core.sip.creators;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.FileSystems;
@@ -12,11 +11,10 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Set;
@@ -31,6 +29,7 @@ import org.roda.rodain.core.rules.filters.ContentFilter;
 import org.roda.rodain.core.schema.DescriptiveMetadata;
 import org.roda.rodain.core.sip.SipPreview;
 import org.roda.rodain.core.sip.SipRepresentation;
+import org.roda.rodain.core.utils.DirectoryCache;
 import org.roda.rodain.core.utils.TreeVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,13 +41,17 @@ import org.slf4j.LoggerFactory;
 public class SipPreviewCreator extends Observable implements TreeVisitor {
   private static final Logger LOGGER = LoggerFactory.getLogger(SipPreviewCreator.class.getName());
   private String startPath;
+  private static final int DEFAULT_CHUNK_SIZE = 1000;
   // This map is returned, in full, to the SipPreviewNode when there's an update
   protected Map<String, SipPreview> sipsMap;
-  // This ArrayList is used to keep the SIPs ordered.
-  // We need them ordered because we have to keep track of which SIPs have
-  // already been loaded
-  protected List<SipPreview> sips;
-  protected int added = 0, returned = 0;
+  // The SIPs that haven't been returned yet, in the order they were created.
+  // They are dropped as soon as they are returned, so the creator doesn't keep a
+  // second reference to every SIP
+  private Deque<SipPreview> pending;
+  protected int added = 0;
+  // number of SIPs after which the observers are notified, so that they take
+  // the pending SIPs before the visit goes on
+  protected int chunkSize;
   protected Deque<TreeNode> nodes;
   protected Set<TreeNode> files;
 
@@ -59,6 +62,9 @@ public class SipPreviewCreator extends Observable implements TreeVisitor {
   protected Path metadataPath;
   protected String templateType, metadataVersion;
   private Map<String, Set<Path>> metadata;
+  // used with the SAME_DIRECTORY option
+  private PathMatcher metadataMatcher;
+  private Map<Path, Set<Path>> metadataCandidates;
 
   protected boolean cancelled = false;
 
@@ -81,7 +87,9 @@ public class SipPreviewCreator extends Observable implements TreeVisitor {
     Path metadataPath, String templateType, String metadataVersion) {
     this.filters = filters;
     sipsMap = new HashMap<>();
-    sips = new ArrayList<>();
+    pending = new ArrayDeque<>();
+    chunkSize = Math.max(1,
+      ConfigurationManager.getConfigAsInteger(Constants.CONF_K_SIP_PREVIEW_CHUNK_SIZE, DEFAULT_CHUNK_SIZE));
     nodes = new ArrayDeque<>();
     this.id = id;
     this.metadataOption = metadataOption;
@@ -91,6 +99,7 @@ public class SipPreviewCreator extends Observable implements TreeVisitor {
     this.metadataVersion = metadataVersion;
     files = new HashSet<>();
     metadata = new HashMap<>();
+    metadataCandidates = new HashMap<>();
 
     if (metadataPath != null && metadataOption == MetadataOption.DIFF_DIRECTORY) {
       try {
@@ -129,21 +138,20 @@ public class SipPreviewCreator extends Observable implements TreeVisitor {
   }
 
   /**
-   * The object keeps a list with the created SIPs and this method returns them
-   * one at a time.
+   * The object keeps a queue with the created SIPs that haven't been returned
+   * yet and this method returns them one at a time.
    *
-   * @return The next SIP in the list.
+   * @return The next SIP in the queue.
    */
   public SipPreview getNext() {
-    return sips.get(returned++);
+    return pending.poll();
   }
 
   /**
-   * @return True if the number of SIPs returned is smaller than the count of
-   *         added SIPs.
+   * @return True if there are created SIPs that haven't been returned yet.
    */
   public boolean hasNext() {
-    return returned < added;
+    return !pending.isEmpty();
   }
 
   protected boolean filter(Path path) {
@@ -185,15 +193,16 @@ public class SipPreviewCreator extends Observable implements TreeVisitor {
   }
 
   /**
-   * Adds the current directory to its parent's node. If the parent doesn't exist,
-   * adds a new node to the Deque.
+   * Drops the metadata candidates listed in the directory, since all the SIPs
+   * that can use them (the directory and its files) have been created when its
+   * visit ends. The subclasses call it after creating their SIPs.
    *
    * @param path
    *          The path of the directory.
    */
   @Override
   public void postVisitDirectory(Path path) {
-    // do nothing
+    metadataCandidates.remove(path);
   }
 
   /**
@@ -245,11 +254,11 @@ public class SipPreviewCreator extends Observable implements TreeVisitor {
     // in that case we will jump the folder and add the files to the root of the
     // representation
 
-    if (Files.isDirectory(node.getPath())) {
+    if (DirectoryCache.isDirectory(node.getPath())) {
       onlyFiles = true;
       if (!jumpBaseFolder) {
         for (String pt : node.getKeys()) {
-          if (Files.isDirectory(Paths.get(pt))) {
+          if (DirectoryCache.isDirectory(Paths.get(pt))) {
             onlyFiles = false;
             break;
           }
@@ -269,7 +278,7 @@ public class SipPreviewCreator extends Observable implements TreeVisitor {
     Set<SipRepresentation> repSet = new HashSet<>();
     repSet.add(rep);
     SipPreview sipPreview = new SipPreview(path.getFileName().toString(), repSet, null);
-    node.addObserver(sipPreview);
+    node.setContentListener(sipPreview);
 
     if (metadataOption == MetadataOption.TEMPLATE) {
       DescriptiveMetadata dom = new DescriptiveMetadata(metadataOption, templateType, metadataType, metadataVersion);
@@ -289,11 +298,37 @@ public class SipPreviewCreator extends Observable implements TreeVisitor {
     String fileLevelItem = ConfigurationManager.getMetadataConfig(templateType + Constants.CONF_K_SUFFIX_FILE_LEVEL);
     sipPreview.setDescriptionlevel(fileLevelItem);
 
-    sips.add(sipPreview);
+    addSip(sipPreview);
+    return sipPreview;
+  }
+
+  /**
+   * Registers a created SIP and queues it to be returned by
+   * {@link #getNext()}.
+   *
+   * @param sipPreview
+   *          The created SIP
+   */
+  protected void addSip(SipPreview sipPreview) {
     sipsMap.put(sipPreview.getId(), sipPreview);
     added++;
+    queueSip(sipPreview);
+  }
 
-    return sipPreview;
+  /**
+   * Queues a created SIP. When the queue reaches the chunk size, the observers
+   * are notified and take the queued SIPs before the visit goes on, so the
+   * queue never grows past a chunk.
+   *
+   * @param sipPreview
+   *          The created SIP
+   */
+  protected void queueSip(SipPreview sipPreview) {
+    pending.add(sipPreview);
+    if (pending.size() >= chunkSize) {
+      setChanged();
+      notifyObservers(Constants.EVENT_SIPS_CHUNK);
+    }
   }
 
   protected Set<Path> getMetadataPath(Path sipPath) {
@@ -314,28 +349,41 @@ public class SipPreviewCreator extends Observable implements TreeVisitor {
     return result;
   }
 
+  /*
+   * The metadata candidates of each directory are listed once and reused by all
+   * the SIPs created from the directory (e.g. one SIP per file), until the
+   * visit of the directory ends.
+   */
   private Set<Path> searchMetadata(Path sipPath) {
-    File dir = sipPath.toFile();
-    if (!dir.isDirectory()) {
-      dir = sipPath.getParent().toFile();
+    Path dir = sipPath;
+    if (!DirectoryCache.isDirectory(dir)) {
+      dir = sipPath.getParent();
     }
+    return metadataCandidates.computeIfAbsent(dir, this::listMetadata);
+  }
 
-    PathMatcher matcher = FileSystems.getDefault().getPathMatcher(Constants.MISC_GLOB + templateType);
-    File[] foundFiles = dir.listFiles((dir1, name) -> matcher.matches(Paths.get(name)));
-
+  private Set<Path> listMetadata(Path dir) {
+    if (metadataMatcher == null) {
+      metadataMatcher = FileSystems.getDefault().getPathMatcher(Constants.MISC_GLOB + templateType);
+    }
     Set<Path> result = new HashSet<>();
-    if (foundFiles != null && foundFiles.length > 0) {
-      for (File foundFile : foundFiles) {
-        result.add(foundFile.toPath());
+    try {
+      for (DirectoryCache.Entry entry : DirectoryCache.list(dir)) {
+        Path path = entry.getPath();
+        if (metadataMatcher.matches(path.getFileName())) {
+          result.add(path);
+        }
       }
+    } catch (IOException e) {
+      LOGGER.debug("Unable to list the metadata of {}", dir, e);
     }
-    return result;
+    return Collections.unmodifiableSet(result);
   }
 
   private Set<Path> getFileFromDir(Path path) {
     String fileNameWithExtension = path.getFileName().toString();
     String fileName;
-    if (Files.isDirectory(path)) {
+    if (DirectoryCache.isDirectory(path)) {
       fileName = fileNameWithExtension;
     } else {
       fileName = FilenameUtils.removeExtension(fileNameWithExtension);
@@ -129,12 +129,10 @@ public class SipSingle extends SipPreviewCreator {
     }
 
     for (TreeNode tn : files) {
-      tn.addObserver(sipPreview);
+      tn.setContentListener(sipPreview);
     }
 
-    sips.add(sipPreview);
-    sipsMap.put(sipPreview.getId(), sipPreview);
-    added++;
+    addSip(sipPreview);
 
     setChanged();
     notifyObservers(Constants.EVENT_FINISHED);
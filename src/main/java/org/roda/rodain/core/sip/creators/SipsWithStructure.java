@@ -1,17 +1,13 @@
 package org.roda.rodain.core.sip.creators;
 
-import java.io.IOException;
-import java.nio.file.AccessDeniedException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -29,6 +25,7 @@ import org.roda.rodain.core.sip.PseudoItem;
 import org.roda.rodain.core.sip.PseudoSIP;
 import org.roda.rodain.core.sip.SipPreview;
 import org.roda.rodain.core.template.TemplateFieldValue;
+import org.roda.rodain.core.utils.DirectoryCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +40,7 @@ public class SipsWithStructure extends SipPreviewCreator {
   private Map<Path, PseudoItem> record;
   private Map<Path, Sip> descriptionObjects;
   private Map<Path, SipPreview> sipPreviewMap;
+  private Deque<PseudoItem> completed;
 
   /**
    * Creates a new SipPreviewCreator where there's a new SIP created with all the
@@ -67,6 +65,7 @@ public class SipsWithStructure extends SipPreviewCreator {
     record = new HashMap<>();
     descriptionObjects = new HashMap<>();
     sipPreviewMap = new HashMap<>();
+    completed = new ArrayDeque<>();
   }
 
   /**
@@ -80,6 +79,9 @@ public class SipsWithStructure extends SipPreviewCreator {
    */
   @Override
   public void preVisitDirectory(final Path path, final BasicFileAttributes attrs) {
+    // registered here instead of in a previous walk, so each rule reads the tree
+    // only once
+    PathCollection.simpleAddPath(path);
     if (filter(path) || cancelled) {
       return;
     }
@@ -87,29 +89,6 @@ public class SipsWithStructure extends SipPreviewCreator {
     folders.add(newFolder);
   }
 
-  @Override
-  public void setStartPath(String path) {
-    try {
-      Files.walkFileTree(Paths.get(path), new SimpleFileVisitor<Path>() {
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-          PathCollection.simpleAddPath(file);
-          return isTerminated();
-        }
-
-        @Override
-        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-          PathCollection.simpleAddPath(dir);
-          return isTerminated();
-        }
-      });
-    } catch (final AccessDeniedException e) {
-      LOGGER.info("Access denied to file", e);
-    } catch (final IOException e) {
-      LOGGER.error("Error walking the file tree", e);
-    }
-  }
-
   /**
    * Adds the current directory to its parent's node. If the parent doesn't exist,
    * adds a new node to the Deque.
@@ -200,6 +179,7 @@ public class SipsWithStructure extends SipPreviewCreator {
         tree.add(pdo);
       }
     }
+    super.postVisitDirectory(path);
   }
 
   private String getDescriptiveMetadataTitle(Set<TemplateFieldValue> values) {
@@ -223,6 +203,7 @@ public class SipsWithStructure extends SipPreviewCreator {
    */
   @Override
   public void visitFile(Path path, BasicFileAttributes attrs) {
+    PathCollection.simpleAddPath(path);
     if (filter(path) || cancelled) {
       return;
     }
@@ -236,8 +217,14 @@ public class SipsWithStructure extends SipPreviewCreator {
   }
 
   /**
-   * Ends the tree visit, creating the SIP with all the files added during the
-   * visit and notifying the observers.
+   * Ends the tree visit, creating the SIPs of the visited structure and
+   * notifying the observers.
+   * <p/>
+   * <p>
+   * The SIPs are created one top level item at a time. The completed items are
+   * handed to the observers in chunks of about {@link #chunkSize} SIPs, and the
+   * records of an item are dropped as soon as the observers have taken it.
+   * </p>
    */
   @Override
   public void end() {
@@ -246,23 +233,72 @@ public class SipsWithStructure extends SipPreviewCreator {
       notifyObservers(Constants.EVENT_FINISHED);
       return;
     }
-    Set<PseudoDescriptionObject> descObjs = new HashSet<>();
-    record.forEach((path, pseudoItem) -> {
-      if (pseudoItem instanceof PseudoSIP) {
-        PseudoSIP pseudoSIP = (PseudoSIP) pseudoItem;
-        createSip(pseudoSIP.getNode());
+    Set<Path> descriptionObjectPaths = new HashSet<>();
+    List<PseudoItem> chunk = new ArrayList<>();
+    int chunkSips = 0;
+    for (PseudoItem item : tree) {
+      if (cancelled) {
+        break;
       }
-      if (pseudoItem instanceof PseudoDescriptionObject) {
-        descObjs.add((PseudoDescriptionObject) pseudoItem);
+      chunkSips += createSips(item, descriptionObjectPaths);
+      completed.add(item);
+      chunk.add(item);
+      if (chunkSips >= chunkSize) {
+        setChanged();
+        notifyObservers(Constants.EVENT_SIPS_CHUNK);
+        chunk.forEach(this::release);
+        chunk.clear();
+        chunkSips = 0;
       }
-    });
+    }
 
     // Map the paths of the description objects only AFTER the SIPs are created
     // to avoid unwanted filtering
-    descObjs
-      .forEach(pseudoDescriptionObject -> PathCollection.addPath(pseudoDescriptionObject.getPath(), PathState.MAPPED));
+    descriptionObjectPaths.forEach(path -> PathCollection.addPath(path, PathState.MAPPED));
     setChanged();
     notifyObservers(Constants.EVENT_FINISHED);
+    chunk.forEach(this::release);
+    tree.clear();
+  }
+
+  /*
+   * Creates the SIPs of an item and of all the items under it. Uses a stack
+   * instead of recursion since the structure can be very deep.
+   */
+  private int createSips(PseudoItem item, Set<Path> descriptionObjectPaths) {
+    int count = 0;
+    Deque<PseudoItem> stack = new ArrayDeque<>();
+    stack.push(item);
+    while (!stack.isEmpty()) {
+      PseudoItem current = stack.pop();
+      if (current instanceof PseudoSIP) {
+        createSip(((PseudoSIP) current).getNode());
+        count++;
+      } else if (current instanceof PseudoDescriptionObject) {
+        PseudoDescriptionObject pdo = (PseudoDescriptionObject) current;
+        descriptionObjectPaths.add(pdo.getPath());
+        pdo.getChildren().forEach(stack::push);
+      }
+    }
+    return count;
+  }
+
+  private void release(PseudoItem item) {
+    Deque<PseudoItem> stack = new ArrayDeque<>();
+    stack.push(item);
+    while (!stack.isEmpty()) {
+      PseudoItem current = stack.pop();
+      if (current instanceof PseudoSIP) {
+        Path path = ((PseudoSIP) current).getNode().getPath();
+        record.remove(path);
+        sipPreviewMap.remove(path);
+      } else if (current instanceof PseudoDescriptionObject) {
+        PseudoDescriptionObject pdo = (PseudoDescriptionObject) current;
+        record.remove(pdo.getPath());
+        descriptionObjects.remove(pdo.getPath());
+        pdo.getChildren().forEach(stack::push);
+      }
+    }
   }
 
   private void createSip(TreeNode node) {
@@ -271,12 +307,26 @@ public class SipsWithStructure extends SipPreviewCreator {
     sipPreviewMap.put(path, sipPreview);
   }
 
-  public Map<Path, PseudoItem> getRecord() {
-    return record;
+  /**
+   * The SIPs of this creator are handed to the observers with their top level
+   * item, see {@link #pollCompleted()}, so they aren't queued.
+   *
+   * @param sipPreview
+   *          The created SIP
+   */
+  @Override
+  protected void queueSip(SipPreview sipPreview) {
+    // do nothing
   }
 
-  public Set<PseudoItem> getTree() {
-    return tree;
+  /**
+   * @return The next top level item whose SIPs have all been created, or null
+   *         if there's none. The SIPs and description objects of the item are
+   *         in {@link #getSipPreviewMap()} and {@link #getDescriptionObjects()}
+   *         until the observers are notified.
+   */
+  public PseudoItem pollCompleted() {
+    return completed.poll();
   }
 
   public Map<Path, Sip> getDescriptionObjects() {
@@ -287,14 +337,6 @@ public class SipsWithStructure extends SipPreviewCreator {
     return sipPreviewMap;
   }
 
-  private FileVisitResult isTerminated() {
-    // terminate if the thread has been interrupted
-    if (Thread.interrupted() || cancelled) {
-      return FileVisitResult.TERMINATE;
-    }
-    return FileVisitResult.CONTINUE;
-  }
-
   class Folder {
     private Path path;
     private Set<Path> files, folders;
@@ -318,7 +360,7 @@ public class SipsWithStructure extends SipPreviewCreator {
     }
 
     public void addItem(Path path) {
-      if (Files.isDirectory(path)) {
+      if (DirectoryCache.isDirectory(path)) {
         folders.add(path);
       } else
         files.add(path);
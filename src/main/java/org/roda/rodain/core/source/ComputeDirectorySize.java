@@ -1,69 +1,139 @@
 package org.roda.rodain.core.source;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Observable;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.roda.rodain.core.utils.TreeVisitor;
+import org.roda.rodain.core.source.DirectorySizeCache.Totals;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Computes the number of files and directories and the size of a set of
+ * selected paths, using the totals kept by the {@link DirectorySizeCache}.
+ * <p/>
+ * <p>
+ * When all the selected directories have been computed before, their cached
+ * totals are published right away and then checked against the file system in
+ * the background. Otherwise the partial counts are published while the
+ * directories are being computed.
+ * </p>
+ *
  * @author Andre Pereira apereira@keep.pt
  * @since 24-09-2015.
  */
-public class ComputeDirectorySize extends Observable implements TreeVisitor {
+public class ComputeDirectorySize extends Observable implements Runnable, DirectorySizeCache.Listener {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ComputeDirectorySize.class.getName());
   private static final int UPDATE_FREQUENCY = 500; // in milliseconds
-  private long filesCount = 0, directoryCount, size = 0;
-  private long lastUIUpdate = 0;
+  private final Set<String> paths;
+  private final AtomicLong progressFiles = new AtomicLong(), progressDirs = new AtomicLong(),
+    progressSize = new AtomicLong();
+  private volatile long filesCount = 0, directoryCount = 0, size = 0;
+  private volatile long lastUIUpdate = 0;
+  private volatile boolean cancelled = false, publishProgress = true;
 
   /**
    * Creates a new ComputeDirectorySize object.
+   *
+   * @param paths
+   *          The selected paths
    */
-  public ComputeDirectorySize() {
+  public ComputeDirectorySize(Set<String> paths) {
+    this.paths = paths;
   }
 
   @Override
-  public void preVisitDirectory(Path path, BasicFileAttributes attrs) {
+  public void run() {
+    List<Path> directories = new ArrayList<>();
+    long files = 0, fileSize = 0;
+    for (String st : paths) {
+      Path path = Paths.get(st);
+      try {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attrs.isDirectory()) {
+          directories.add(path);
+        } else {
+          files++;
+          fileSize += attrs.size();
+        }
+      } catch (IOException e) {
+        LOGGER.debug("Unable to read the attributes of {}", path, e);
+      }
+    }
+    progressFiles.addAndGet(files);
+    progressSize.addAndGet(fileSize);
+
+    // show the previous totals while they are checked
+    Totals cached = sum(directories, true);
+    if (cached != null) {
+      publishProgress = false;
+      set(files + cached.getFiles(), cached.getDirectories(), fileSize + cached.getSize());
+    }
+
+    Totals computed = sum(directories, false);
+    if (computed != null && !cancelled) {
+      set(files + computed.getFiles(), computed.getDirectories(), fileSize + computed.getSize());
+    }
   }
 
-  @Override
-  public void postVisitDirectory(Path path) {
-    directoryCount++;
-    update();
+  private Totals sum(List<Path> directories, boolean onlyCached) {
+    long files = 0, dirs = 0, dirSize = 0;
+    for (Path directory : directories) {
+      Totals totals = onlyCached ? DirectorySizeCache.getCached(directory)
+        : DirectorySizeCache.compute(directory, this);
+      if (totals == null) {
+        return null;
+      }
+      files += totals.getFiles();
+      dirs += totals.getDirectories();
+      dirSize += totals.getSize();
+    }
+    return new Totals(files, dirs, dirSize);
   }
 
-  @Override
-  public void visitFile(Path path, BasicFileAttributes attrs) {
-    size += attrs.size();
-    filesCount++;
-    update();
+  private synchronized void set(long files, long dirs, long totalSize) {
+    filesCount = files;
+    directoryCount = dirs;
+    size = totalSize;
+    setChanged();
+    notifyObservers();
   }
 
   @Override
-  public void visitFileFailed(Path path) {
-    /*
-     * This FileVisitor doesn't need to need to do anything if the visit failed
-     */
+  public void directoryCounted(long files, long dirSize) {
+    progressDirs.incrementAndGet();
+    progressFiles.addAndGet(files);
+    progressSize.addAndGet(dirSize);
+    long now = System.currentTimeMillis();
+    if (publishProgress && now - lastUIUpdate > UPDATE_FREQUENCY) {
+      lastUIUpdate = now;
+      set(progressFiles.get(), progressDirs.get(), progressSize.get());
+    }
   }
 
   @Override
-  public void end() {
-    setChanged();
-    notifyObservers();
+  public boolean isCancelled() {
+    return cancelled;
   }
 
-  @Override
-  public void setStartPath(String st) {
-    /*
-     * This FileVisitor does not need this method to do anything
-     */
+  /**
+   * Stops the computation. The observers aren't notified after this.
+   */
+  public void cancel() {
+    cancelled = true;
   }
 
-  private void update() {
-    long now = System.currentTimeMillis();
-    if (now - lastUIUpdate > UPDATE_FREQUENCY) {
-      setChanged();
-      notifyObservers();
-      lastUIUpdate = now;
+  @Override
+  public void notifyObservers() {
+    if (!cancelled) {
+      super.notifyObservers();
     }
   }
 
@@ -78,9 +148,4 @@ public class ComputeDirectorySize extends Observable implements TreeVisitor {
   public long getSize() {
     return size;
   }
-
-  @Override
-  public String getId() {
-    return "dirSize";
-  }
 }
@@ -0,0 +1,249 @@
+package org.roda.rodain.core.source;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.roda.rodain.core.ConfigurationManager;
+import org.roda.rodain.core.Constants;
+import org.roda.rodain.core.utils.DirectoryCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps, for each directory, the number of files and the size of its own
+ * entries and the totals of the whole tree under it, so that the size of a
+ * directory that has already been computed doesn't need a new walk.
+ * <p/>
+ * <p>
+ * The totals are computed bottom-up. A directory is only listed again when its
+ * modification time has changed; for the other directories the cached counts
+ * of their own entries are used and only their sub directories are checked.
+ * The sizes of the files aren't checked, so a file that is modified in place
+ * keeps its old size until an entry of its directory is added, removed or
+ * renamed.
+ * </p>
+ *
+ * @author agent agent@local
+ * @since 18/10/2026.
+ */
+public final class DirectorySizeCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DirectorySizeCache.class.getName());
+  private static final int DEFAULT_MAX_DIRECTORIES = 100000;
+  private static final int DEFAULT_PARALLELISM = 8;
+  private static final Map<Path, Node> nodes = new LinkedHashMap<>(16, 0.75f, true);
+  private static int maxDirectories = -1;
+  private static ForkJoinPool pool;
+
+  private DirectorySizeCache() {
+  }
+
+  private static synchronized ForkJoinPool getPool() {
+    if (pool == null) {
+      int parallelism = ConfigurationManager.getConfigAsInteger(Constants.CONF_K_WALK_FILE_TREE_PARALLELISM,
+        DEFAULT_PARALLELISM);
+      pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+    return pool;
+  }
+
+  /**
+   * Gets the last computed totals of a directory, without checking if the
+   * directory has changed.
+   *
+   * @param dir
+   *          The directory
+   * @return The totals or null if they haven't been computed.
+   */
+  public static synchronized Totals getCached(Path dir) {
+    Node node = nodes.get(dir);
+    return node == null ? null : node.totals;
+  }
+
+  /**
+   * Computes the totals of a directory, reusing the counts of the directories
+   * that haven't been modified since they were last listed.
+   *
+   * @param dir
+   *          The directory
+   * @param listener
+   *          Receives the counts of each directory as it is processed, can be
+   *          null
+   * @return The totals of the directory, or null if the computation has been
+   *         cancelled.
+   */
+  public static Totals compute(Path dir, Listener listener) {
+    return getPool().invoke(new SizeTask(dir, listener));
+  }
+
+  private static synchronized Node lookup(Path dir) {
+    return nodes.get(dir);
+  }
+
+  private static synchronized void store(Path dir, Node node) {
+    if (maxDirectories < 0) {
+      maxDirectories = Math.max(1, ConfigurationManager
+        .getConfigAsInteger(Constants.CONF_K_DIRECTORY_SIZE_CACHE_MAX_DIRECTORIES, DEFAULT_MAX_DIRECTORIES));
+    }
+    nodes.put(dir, node);
+    while (nodes.size() > maxDirectories) {
+      nodes.remove(nodes.keySet().iterator().next());
+    }
+  }
+
+  /**
+   * Removes all the computed totals.
+   */
+  public static synchronized void clear() {
+    nodes.clear();
+  }
+
+  /**
+   * Receives the progress of a computation. The methods are called from the
+   * threads of the pool.
+   */
+  public interface Listener {
+    /**
+     * Called when the entries of a directory have been counted.
+     *
+     * @param files
+     *          The number of files directly inside the directory
+     * @param size
+     *          The size of those files
+     */
+    void directoryCounted(long files, long size);
+
+    /**
+     * @return True if the computation must stop.
+     */
+    boolean isCancelled();
+  }
+
+  /**
+   * The number of files and directories (including the directory itself) and
+   * the total size of the files of a directory.
+   */
+  public static final class Totals {
+    private final long files, directories, size;
+
+    public Totals(long files, long directories, long size) {
+      this.files = files;
+      this.directories = directories;
+      this.size = size;
+    }
+
+    public long getFiles() {
+      return files;
+    }
+
+    public long getDirectories() {
+      return directories;
+    }
+
+    public long getSize() {
+      return size;
+    }
+  }
+
+  private static final class Node {
+    private final FileTime modified;
+    private final long files, size;
+    private final Path[] subDirectories;
+    // null until the whole tree under the directory has been computed
+    private final Totals totals;
+
+    private Node(FileTime modified, long files, long size, Path[] subDirectories, Totals totals) {
+      this.modified = modified;
+      this.files = files;
+      this.size = size;
+      this.subDirectories = subDirectories;
+      this.totals = totals;
+    }
+  }
+
+  private static final class SizeTask extends RecursiveTask<Totals> {
+    private final Path dir;
+    private final Listener listener;
+
+    private SizeTask(Path dir, Listener listener) {
+      this.dir = dir;
+      this.listener = listener;
+    }
+
+    @Override
+    protected Totals compute() {
+      if (listener != null && listener.isCancelled()) {
+        return null;
+      }
+      Node node;
+      try {
+        node = getNode();
+      } catch (IOException e) {
+        // like the file tree walk, a directory that can't be read counts as an
+        // empty directory
+        LOGGER.debug("Unable to read the directory {}", dir, e);
+        return new Totals(0, 1, 0);
+      }
+      if (listener != null) {
+        listener.directoryCounted(node.files, node.size);
+      }
+
+      List<SizeTask> subTasks = new ArrayList<>(node.subDirectories.length);
+      for (Path subDirectory : node.subDirectories) {
+        subTasks.add(new SizeTask(subDirectory, listener));
+      }
+      invokeAll(subTasks);
+
+      long files = node.files, directories = 1, size = node.size;
+      for (SizeTask subTask : subTasks) {
+        Totals subTotals = subTask.join();
+        if (subTotals == null) {
+          return null;
+        }
+        files += subTotals.files;
+        directories += subTotals.directories;
+        size += subTotals.size;
+      }
+      Totals totals = new Totals(files, directories, size);
+      store(dir, new Node(node.modified, node.files, node.size, node.subDirectories, totals));
+      return totals;
+    }
+
+    /*
+     * Returns the cached node of the directory if it hasn't been modified,
+     * otherwise counts its entries again.
+     */
+    private Node getNode() throws IOException {
+      FileTime modified = Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS);
+      Node node = lookup(dir);
+      if (node != null && node.modified.equals(modified)) {
+        return node;
+      }
+
+      long files = 0, size = 0;
+      List<Path> subDirectories = new ArrayList<>();
+      for (DirectoryCache.Entry entry : DirectoryCache.list(dir)) {
+        BasicFileAttributes attrs = entry.getAttributes();
+        if (attrs == null) {
+          continue;
+        }
+        if (attrs.isDirectory()) {
+          subDirectories.add(entry.getPath());
+        } else {
+          files++;
+          size += attrs.size();
+        }
+      }
+      return new Node(modified, files, size, subDirectories.toArray(new Path[subDirectories.size()]), null);
+    }
+  }
+}
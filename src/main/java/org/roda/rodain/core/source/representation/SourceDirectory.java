@@ -4,11 +4,21 @@ import java.io.IOException;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.roda.rodain.core.utils.DirectoryCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,12 +28,37 @@ import org.slf4j.LoggerFactory;
  */
 public class SourceDirectory implements SourceItem {
   private static final Logger LOGGER = LoggerFactory.getLogger(SourceDirectory.class.getName());
-  private static final int LOADING_SIZE = 100;
+  private static final int MIN_LOADING_SIZE = 100;
+  private static final int MAX_LOADING_SIZE = 1000;
+  // the page size is adapted so that reading a page takes about this long
+  private static final long TARGET_PAGE_NANOS = 250_000_000L;
+  private static final ExecutorService prefetcher = Executors.newFixedThreadPool(2, runnable -> {
+    Thread thread = new Thread(runnable, "SourceDirectory-prefetch");
+    thread.setDaemon(true);
+    return thread;
+  });
   private Path path;
+  private BasicFileAttributes attributes;
   private int itemsToLoad = 0;
+  private int loadingSize = MIN_LOADING_SIZE;
+  // average time to read an entry, 0 until the first entry is read
+  private double nanosPerEntry = 0;
   private TreeMap<String, SourceItem> children;
+  // guards the reading of the directory stream, which can be slow, so that
+  // the methods that only check the state of the directory don't wait for it.
+  // The object's lock can be taken while holding it, never the other way
+  private final Object streamLock = new Object();
   private DirectoryStream<Path> directoryStream;
-  private Iterator<Path> iterator;
+  private volatile Iterator<DirectoryCache.Entry> iterator;
+  // true while the iterator may have more entries, updated after each read
+  private volatile boolean moreEntries;
+  // entries read in the background, before the next page was requested.
+  // Guarded by the object's lock
+  private final Deque<DirectoryCache.Entry> prefetched = new ArrayDeque<>();
+  // the entries read from the directory stream, added to the DirectoryCache
+  // when the stream is read to the end
+  private List<DirectoryCache.Entry> listed;
+  private FileTime modified;
   private boolean showFiles;
 
   /**
@@ -35,7 +70,22 @@ public class SourceDirectory implements SourceItem {
    *          Whether to show the files or not
    */
   public SourceDirectory(Path path, boolean showFiles) {
+    this(path, null, showFiles);
+  }
+
+  /**
+   * Creates a new SourceDirectory object.
+   *
+   * @param path
+   *          The path associated to the object
+   * @param attributes
+   *          The attributes of the directory, read when its parent was listed
+   * @param showFiles
+   *          Whether to show the files or not
+   */
+  public SourceDirectory(Path path, BasicFileAttributes attributes, boolean showFiles) {
     this.path = path;
+    this.attributes = attributes;
     this.showFiles = showFiles;
     children = new TreeMap<>();
   }
@@ -45,10 +95,16 @@ public class SourceDirectory implements SourceItem {
    *
    * @return The path
    */
+  @Override
   public Path getPath() {
     return path;
   }
 
+  @Override
+  public BasicFileAttributes getAttributes() {
+    return attributes;
+  }
+
   /**
    * Gets the children of the directory
    *
@@ -78,16 +134,17 @@ public class SourceDirectory implements SourceItem {
    *         directory.
    */
   public SourceDirectory getChildDirectory(Path p) {
-    if (Files.isDirectory(p))
-      return (SourceDirectory) children.get(p.toString());
+    SourceItem child = children.get(p.toString());
+    if (child instanceof SourceDirectory)
+      return (SourceDirectory) child;
     return null;
   }
 
   /**
    * @return True if the iterator isn't closed, false otherwise.
    */
-  public boolean isStreamOpen() {
-    return iterator.hasNext();
+  public synchronized boolean isStreamOpen() {
+    return !prefetched.isEmpty() || moreEntries;
   }
 
   /**
@@ -106,21 +163,61 @@ public class SourceDirectory implements SourceItem {
    * Closes the directory stream if it hasn't been closed yet.
    */
   public void closeDirectoryStream() {
-    try {
-      if (directoryStream != null)
-        directoryStream.close();
-    } catch (IOException e) {
-      LOGGER.error("Error closing directory stream", e);
+    synchronized (streamLock) {
+      // a listing that wasn't read to the end can't be cached
+      listed = null;
+      moreEntries = false;
+      synchronized (this) {
+        prefetched.clear();
+      }
+      try {
+        if (directoryStream != null)
+          directoryStream.close();
+      } catch (IOException e) {
+        LOGGER.error("Error closing directory stream", e);
+      }
     }
   }
 
+  /*
+   * Must be called while holding the stream lock.
+   */
   private void startDirectoryStream() {
-    if (directoryStream != null)
+    if (iterator != null)
       return;
 
+    List<DirectoryCache.Entry> cached = DirectoryCache.getListing(path);
+    if (cached != null) {
+      iterator = cached.iterator();
+      moreEntries = !cached.isEmpty();
+      return;
+    }
     try {
+      modified = Files.getLastModifiedTime(path);
       directoryStream = Files.newDirectoryStream(path);
-      iterator = directoryStream.iterator();
+      listed = new ArrayList<>();
+      Iterator<Path> paths = directoryStream.iterator();
+      iterator = new Iterator<DirectoryCache.Entry>() {
+        @Override
+        public boolean hasNext() {
+          return paths.hasNext();
+        }
+
+        @Override
+        public DirectoryCache.Entry next() {
+          Path file = paths.next();
+          DirectoryCache.Entry entry = new DirectoryCache.Entry(file, readAttributes(file));
+          if (listed != null) {
+            if (entry.getAttributes() == null) {
+              listed = null;
+            } else {
+              listed.add(entry);
+            }
+          }
+          return entry;
+        }
+      };
+      moreEntries = paths.hasNext();
     } catch (AccessDeniedException e) {
       LOGGER.info("No access to file", e);
     } catch (IOException e) {
@@ -138,41 +235,147 @@ public class SourceDirectory implements SourceItem {
 
   /**
    * Loads more items to the children map.
+   * <p/>
+   * <p>
+   * The number of items loaded grows when the entries are read fast and
+   * shrinks when they are slow (e.g. in a network share), so that each page
+   * takes about the same time. After a page is loaded, the entries of the next
+   * one are read in the background.
+   * </p>
    *
    * @return The map with the newly added items
    */
   public SortedMap<String, SourceItem> loadMore() {
-    startDirectoryStream();
-    int loaded = 0, childrenSize = children.size();
     TreeMap<String, SourceItem> result = new TreeMap<>();
-    if (iterator != null) {
-      itemsToLoad += LOADING_SIZE;
-      while (iterator.hasNext() && (childrenSize + loaded < itemsToLoad)) {
-        Path file = iterator.next();
-        if (!showFiles && !Files.isDirectory(file))
+    synchronized (streamLock) {
+      startDirectoryStream();
+      if (iterator == null) {
+        return result;
+      }
+      int loaded = 0, childrenSize = children.size();
+      itemsToLoad += loadingSize;
+      DirectoryCache.Entry entry;
+      while (childrenSize + loaded < itemsToLoad && (entry = nextEntry()) != null) {
+        Path file = entry.getPath();
+        if (!showFiles && !isDirectory(entry))
           continue;
-        SourceItem added = loadChild(file);
+        SourceItem added = loadChild(entry);
         result.put(file.toString(), added);
         loaded++;
       }
       // we can close the directory stream if there's no more files to load in
       // the iterator
-      if (!iterator.hasNext())
+      if (!hasPrefetched() && !moreEntries) {
+        if (listed != null) {
+          DirectoryCache.put(path, modified, listed);
+        }
         closeDirectoryStream();
+      } else if (moreEntries) {
+        prefetcher.execute(this::prefetch);
+      }
     }
     return result;
   }
 
+  private synchronized boolean hasPrefetched() {
+    return !prefetched.isEmpty();
+  }
+
+  /*
+   * Must be called while holding the stream lock.
+   */
+  private DirectoryCache.Entry nextEntry() {
+    synchronized (this) {
+      if (!prefetched.isEmpty()) {
+        return prefetched.poll();
+      }
+    }
+    return readEntry();
+  }
+
+  /*
+   * Reads an entry from the iterator, updating the page size with the time it
+   * took. Must be called while holding the stream lock.
+   */
+  private DirectoryCache.Entry readEntry() {
+    long start = System.nanoTime();
+    if (!moreEntries || !iterator.hasNext()) {
+      moreEntries = false;
+      return null;
+    }
+    DirectoryCache.Entry entry = iterator.next();
+    moreEntries = iterator.hasNext();
+    long elapsed = System.nanoTime() - start;
+    nanosPerEntry = nanosPerEntry == 0 ? elapsed : nanosPerEntry * 0.9 + elapsed * 0.1;
+    long size = (long) (TARGET_PAGE_NANOS / Math.max(1, nanosPerEntry));
+    loadingSize = (int) Math.max(MIN_LOADING_SIZE, Math.min(MAX_LOADING_SIZE, size));
+    return entry;
+  }
+
+  /*
+   * Reads the entries of the next page, so that they are ready when the user
+   * asks for more items. The entries are read into a local buffer, holding only
+   * the stream lock, and then added to the prefetched entries at once.
+   */
+  private void prefetch() {
+    synchronized (streamLock) {
+      if (iterator == null) {
+        return;
+      }
+      List<DirectoryCache.Entry> buffer = new ArrayList<>();
+      int missing;
+      synchronized (this) {
+        missing = loadingSize - prefetched.size();
+      }
+      DirectoryCache.Entry entry;
+      while (buffer.size() < missing && (entry = readEntry()) != null) {
+        buffer.add(entry);
+      }
+      synchronized (this) {
+        prefetched.addAll(buffer);
+      }
+    }
+  }
+
+  /**
+   * Creates the item of a child of the directory and adds it to the children
+   * map.
+   *
+   * @param file
+   *          The path of the child
+   * @return The created item
+   */
   public SourceItem loadChild(Path file) {
-    SourceItem item;
-    if (Files.isDirectory(file)) {
-      item = new SourceDirectory(file, showFiles);
-      addChild(file, item);
+    BasicFileAttributes attrs = DirectoryCache.getAttributes(file);
+    return loadChild(new DirectoryCache.Entry(file, attrs));
+  }
 
+  private SourceItem loadChild(DirectoryCache.Entry entry) {
+    SourceItem item;
+    Path file = entry.getPath();
+    if (isDirectory(entry)) {
+      item = new SourceDirectory(file, entry.getAttributes(), showFiles);
     } else {
-      item = new SourceFile(file);
-      addChild(file, item);
+      item = new SourceFile(file, entry.getAttributes());
     }
+    addChild(file, item);
     return item;
   }
+
+  private static boolean isDirectory(DirectoryCache.Entry entry) {
+    BasicFileAttributes attrs = entry.getAttributes();
+    if (attrs == null || attrs.isSymbolicLink()) {
+      return Files.isDirectory(entry.getPath());
+    }
+    return attrs.isDirectory();
+  }
+
+  private static BasicFileAttributes readAttributes(Path file) {
+    try {
+      return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    } catch (IOException e) {
+      LOGGER.debug("Unable to read the attributes of {}", file, e);
+      return null;
+    }
+  }
 }
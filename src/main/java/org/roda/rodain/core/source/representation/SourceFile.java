@@ -1,6 +1,7 @@
 package org.roda.rodain.core.source.representation;
 
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * @author Andre Pereira apereira@keep.pt
@@ -8,6 +9,7 @@ import java.nio.file.Path;
  */
 public class SourceFile implements SourceItem {
   private Path path;
+  private BasicFileAttributes attributes;
 
   /**
    * Creates a new SourceFile object.
@@ -16,13 +18,32 @@ public class SourceFile implements SourceItem {
    *          The path to be associated to the object.
    */
   public SourceFile(Path path) {
+    this(path, null);
+  }
+
+  /**
+   * Creates a new SourceFile object.
+   *
+   * @param path
+   *          The path to be associated to the object.
+   * @param attributes
+   *          The attributes of the file, read when its parent was listed
+   */
+  public SourceFile(Path path, BasicFileAttributes attributes) {
     this.path = path;
+    this.attributes = attributes;
   }
 
   /**
    * @return The associated path
    */
+  @Override
   public Path getPath() {
     return path;
   }
+
+  @Override
+  public BasicFileAttributes getAttributes() {
+    return attributes;
+  }
 }
@@ -1,8 +1,21 @@
 package org.roda.rodain.core.source.representation;
 
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
 /**
  * @author Andre Pereira apereira@keep.pt
  * @since 17-09-2015.
  */
 public interface SourceItem {
+  /**
+   * @return The associated path
+   */
+  Path getPath();
+
+  /**
+   * @return The attributes read when the parent directory was listed (links
+   *         aren't followed), or null if they weren't read.
+   */
+  BasicFileAttributes getAttributes();
 }
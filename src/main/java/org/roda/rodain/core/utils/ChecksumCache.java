@@ -0,0 +1,413 @@
+package org.roda.rodain.core.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.roda.rodain.core.ConfigurationManager;
+import org.roda.rodain.core.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Computes the checksums of files and keeps them, on disk, so that the files
+ * that haven't changed aren't read again when they are exported again.
+ * <p/>
+ * <p>
+ * The checksums of a file are used while its size and modification time are
+ * the same as when they were computed. All the algorithms requested for a file
+ * are computed in a single read. The digests can't be split in chunks, so
+ * several files are hashed at the same time instead, with
+ * {@link #prefetch(Collection, Set)}.
+ * </p>
+ * <p>
+ * The cache is kept in a file of the RODA-in folder with one JSON object per
+ * line, only appended to while the application runs and rewritten, without the
+ * replaced and evicted lines, when it's loaded. The digests are in upper case
+ * hexadecimal, like the ones computed by commons-ip. In memory, the digests are
+ * kept as bytes. The cache file is read and written with streams that aren't
+ * closed when the thread using them is interrupted, as the SIP creators are
+ * when the exportation is cancelled.
+ * </p>
+ *
+ * @author agent agent@local
+ * @since 18/10/2026.
+ */
+public final class ChecksumCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChecksumCache.class.getName());
+  private static final int DEFAULT_MAX_ENTRIES = 100000;
+  private static final int DEFAULT_PARALLELISM = 4;
+  private static final int BUFFER_SIZE = 1024 * 1024;
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+  // by absolute path
+  private static final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private static int maxEntries = -1;
+  private static Path file;
+  private static BufferedWriter writer;
+  private static ForkJoinPool pool;
+
+  private ChecksumCache() {
+  }
+
+  /**
+   * Gets the checksums of a file, reading it only if they haven't been computed
+   * since it was last modified.
+   *
+   * @param path
+   *          The file
+   * @param algorithms
+   *          The names of the digest algorithms, like "SHA-256"
+   * @return A map with the checksum of each algorithm
+   * @throws IOException
+   *           If the file can't be read or an algorithm isn't supported.
+   */
+  public static Map<String, String> get(Path path, Set<String> algorithms) throws IOException {
+    Path absolute = path.toAbsolutePath();
+    BasicFileAttributes attrs = Files.readAttributes(absolute, BasicFileAttributes.class);
+    long size = attrs.size();
+    long modified = attrs.lastModifiedTime().toMillis();
+
+    String key = absolute.toString();
+    Map<String, String> result = new HashMap<>();
+    Entry entry = lookup(key, size, modified);
+    if (entry != null) {
+      for (String algorithm : algorithms) {
+        byte[] digest = entry.getDigest(algorithm);
+        if (digest == null) {
+          break;
+        }
+        result.put(algorithm, toHex(digest));
+      }
+      if (result.size() == algorithms.size()) {
+        return result;
+      }
+    }
+
+    Map<String, byte[]> digests = digest(absolute, algorithms);
+    BasicFileAttributes after = Files.readAttributes(absolute, BasicFileAttributes.class);
+    // a file that changed while it was read isn't cached
+    if (after.size() == size && after.lastModifiedTime().toMillis() == modified) {
+      Map<String, byte[]> kept = new HashMap<>(digests);
+      if (entry != null) {
+        for (int i = 0; i < entry.algorithms.length; i++) {
+          kept.putIfAbsent(entry.algorithms[i], entry.digests[i]);
+        }
+      }
+      store(key, new Entry(size, modified, kept));
+    }
+    result.clear();
+    digests.forEach((algorithm, digest) -> result.put(algorithm, toHex(digest)));
+    return result;
+  }
+
+  /**
+   * Computes the checksums of a file, without using the cache.
+   *
+   * @param path
+   *          The file
+   * @param algorithms
+   *          The names of the digest algorithms, like "SHA-256"
+   * @return A map with the checksum of each algorithm
+   * @throws IOException
+   *           If the file can't be read or an algorithm isn't supported.
+   */
+  public static Map<String, String> compute(Path path, Set<String> algorithms) throws IOException {
+    Map<String, String> result = new HashMap<>();
+    digest(path, algorithms).forEach((algorithm, digest) -> result.put(algorithm, toHex(digest)));
+    return result;
+  }
+
+  private static Map<String, byte[]> digest(Path path, Set<String> algorithms) throws IOException {
+    Map<String, MessageDigest> digests = new HashMap<>();
+    for (String algorithm : algorithms) {
+      try {
+        digests.put(algorithm, MessageDigest.getInstance(algorithm));
+      } catch (NoSuchAlgorithmException e) {
+        throw new IOException(e);
+      }
+    }
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream input = Files.newInputStream(path)) {
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        for (MessageDigest digest : digests.values()) {
+          digest.update(buffer, 0, read);
+        }
+      }
+    }
+    Map<String, byte[]> result = new HashMap<>();
+    for (Map.Entry<String, MessageDigest> digest : digests.entrySet()) {
+      result.put(digest.getKey(), digest.getValue().digest());
+    }
+    return result;
+  }
+
+  /**
+   * Computes, at the same time, the checksums of the files that aren't cached,
+   * so that they are already cached when they are needed. The files that can't
+   * be read are skipped.
+   *
+   * @param paths
+   *          The files
+   * @param algorithms
+   *          The names of the digest algorithms, like "SHA-256"
+   */
+  public static void prefetch(Collection<Path> paths, Set<String> algorithms) {
+    List<RecursiveAction> tasks = new ArrayList<>(paths.size());
+    for (Path path : paths) {
+      tasks.add(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          try {
+            ChecksumCache.get(path, algorithms);
+          } catch (IOException e) {
+            LOGGER.debug("Unable to compute the checksums of {}", path, e);
+          }
+        }
+      });
+    }
+    getPool().invoke(new RecursiveAction() {
+      @Override
+      protected void compute() {
+        invokeAll(tasks);
+      }
+    });
+  }
+
+  private static synchronized ForkJoinPool getPool() {
+    if (pool == null) {
+      int parallelism = ConfigurationManager.getConfigAsInteger(Constants.CONF_K_CHECKSUM_CACHE_PARALLELISM,
+        DEFAULT_PARALLELISM);
+      pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+    return pool;
+  }
+
+  private static synchronized Entry lookup(String path, long size, long modified) {
+    load();
+    Entry entry = entries.get(path);
+    if (entry != null && entry.size == size && entry.modified == modified) {
+      return entry;
+    }
+    return null;
+  }
+
+  private static synchronized void store(String path, Entry entry) {
+    load();
+    if (maxEntries == 0) {
+      return;
+    }
+    entries.put(path, entry);
+    evict();
+    if (writer != null) {
+      try {
+        writer.write(toLine(path, entry));
+        writer.newLine();
+        writer.flush();
+      } catch (IOException e) {
+        LOGGER.warn("Unable to write to the checksum cache, it won't be kept", e);
+        closeWriter();
+      }
+    }
+  }
+
+  private static void evict() {
+    Iterator<String> iterator = entries.keySet().iterator();
+    while (entries.size() > maxEntries && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  /*
+   * Reads the cache file, rewrites it with only the entries kept and opens it
+   * to append the new entries.
+   */
+  private static void load() {
+    if (maxEntries >= 0) {
+      return;
+    }
+    maxEntries = Math.max(0,
+      ConfigurationManager.getConfigAsInteger(Constants.CONF_K_CHECKSUM_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES));
+    if (file == null) {
+      file = ConfigurationManager.getRodainPath().resolve(Constants.CHECKSUM_CACHE_FILE);
+    }
+    if (Files.exists(file)) {
+      try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(file.toFile()), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          readLine(line);
+        }
+      } catch (IOException e) {
+        LOGGER.warn("Unable to read the checksum cache", e);
+      }
+      evict();
+    }
+
+    try {
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      try (BufferedWriter compacted = newWriter(temp, false)) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+          compacted.write(toLine(entry.getKey(), entry.getValue()));
+          compacted.newLine();
+        }
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      writer = newWriter(file, true);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to write the checksum cache, it won't be kept", e);
+      closeWriter();
+    }
+  }
+
+  /**
+   * Forgets the checksums kept in memory and keeps them, from now on, in
+   * another file, read when the cache is next used.
+   *
+   * @param cacheFile
+   *          The file of the cache
+   */
+  static synchronized void reset(Path cacheFile) {
+    closeWriter();
+    entries.clear();
+    maxEntries = -1;
+    file = cacheFile;
+  }
+
+  /*
+   * Unlike the writers of java.nio.file.Files, the stream isn't closed when the
+   * thread is interrupted.
+   */
+  private static BufferedWriter newWriter(Path file, boolean append) throws IOException {
+    return new BufferedWriter(
+      new OutputStreamWriter(new FileOutputStream(file.toFile(), append), StandardCharsets.UTF_8));
+  }
+
+  private static void readLine(String line) {
+    try {
+      JsonNode node = objectMapper.readTree(line);
+      if (node == null) {
+        return;
+      }
+      Map<String, byte[]> digests = new HashMap<>();
+      node.path("checksums").fields()
+        .forEachRemaining(field -> digests.put(field.getKey(), fromHex(field.getValue().asText())));
+      entries.put(node.path("path").asText(),
+        new Entry(node.path("size").asLong(), node.path("modified").asLong(), digests));
+    } catch (IOException | IllegalArgumentException e) {
+      // the last line can be incomplete if the application stopped while
+      // writing it
+      LOGGER.debug("Ignoring checksum cache line {}", line, e);
+    }
+  }
+
+  private static String toLine(String path, Entry entry) throws IOException {
+    Map<String, String> checksums = new LinkedHashMap<>();
+    for (int i = 0; i < entry.algorithms.length; i++) {
+      checksums.put(entry.algorithms[i], toHex(entry.digests[i]));
+    }
+    Map<String, Object> line = new LinkedHashMap<>();
+    line.put("path", path);
+    line.put("size", entry.size);
+    line.put("modified", entry.modified);
+    line.put("checksums", checksums);
+    return objectMapper.writeValueAsString(line);
+  }
+
+  private static void closeWriter() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        LOGGER.debug("Error closing the checksum cache", e);
+      }
+      writer = null;
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    char[] result = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      result[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+      result[i * 2 + 1] = HEX[bytes[i] & 0xF];
+    }
+    return new String(result);
+  }
+
+  private static byte[] fromHex(String hex) {
+    if (hex.length() % 2 != 0) {
+      throw new IllegalArgumentException("Invalid checksum " + hex);
+    }
+    byte[] result = new byte[hex.length() / 2];
+    for (int i = 0; i < result.length; i++) {
+      int high = Character.digit(hex.charAt(i * 2), 16);
+      int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+      if (high < 0 || low < 0) {
+        throw new IllegalArgumentException("Invalid checksum " + hex);
+      }
+      result[i] = (byte) ((high << 4) | low);
+    }
+    return result;
+  }
+
+  /*
+   * The digests of a file, with the algorithm of each one at the same index.
+   */
+  private static final class Entry {
+    private final long size;
+    private final long modified;
+    private final String[] algorithms;
+    private final byte[][] digests;
+
+    private Entry(long size, long modified, Map<String, byte[]> digests) {
+      this.size = size;
+      this.modified = modified;
+      this.algorithms = new String[digests.size()];
+      this.digests = new byte[digests.size()][];
+      int i = 0;
+      for (Map.Entry<String, byte[]> digest : digests.entrySet()) {
+        // the algorithm names are shared by all the entries
+        this.algorithms[i] = digest.getKey().intern();
+        this.digests[i] = digest.getValue();
+        i++;
+      }
+    }
+
+    private byte[] getDigest(String algorithm) {
+      for (int i = 0; i < algorithms.length; i++) {
+        if (algorithms[i].equals(algorithm)) {
+          return digests[i];
+        }
+      }
+      return null;
+    }
+  }
+}
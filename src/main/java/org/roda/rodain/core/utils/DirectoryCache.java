@@ -0,0 +1,274 @@
+package org.roda.rodain.core.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.roda.rodain.core.ConfigurationManager;
+import org.roda.rodain.core.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the listings of the source directories, with the attributes of their
+ * entries, so that the file explorer, the rule visitors, the size computation
+ * and the content creators don't list and stat the same directories over and
+ * over.
+ * <p/>
+ * <p>
+ * The cache is bounded by the total number of entries of the cached listings
+ * and the least recently used listings are evicted first. A listing is only
+ * used while the modification time of its directory is the same as when it was
+ * listed, which is enough to detect added, removed and renamed entries.
+ * Changes to the contents of a file don't change the modification time of its
+ * directory, so the attributes of the entries can be stale.
+ * </p>
+ *
+ * @author agent agent@local
+ * @since 18/10/2026.
+ */
+public final class DirectoryCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryCache.class.getName());
+  private static final int DEFAULT_MAX_ENTRIES = 200000;
+  private static final Map<Path, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+  private static int maxEntries = -1;
+  private static int cachedEntries = 0;
+
+  private DirectoryCache() {
+  }
+
+  private static int getMaxEntries() {
+    if (maxEntries < 0) {
+      maxEntries = Math.max(0,
+        ConfigurationManager.getConfigAsInteger(Constants.CONF_K_DIRECTORY_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES));
+    }
+    return maxEntries;
+  }
+
+  /**
+   * Lists the directory received as parameter, reading the attributes of its
+   * entries without following links. The cached listing is used if the
+   * directory hasn't been modified since it was listed.
+   *
+   * @param dir
+   *          The directory to be listed
+   * @return The entries of the directory
+   * @throws IOException
+   *           If the directory can't be listed.
+   */
+  public static List<Entry> list(Path dir) throws IOException {
+    FileTime modified = Files.getLastModifiedTime(dir);
+    List<Entry> result = getListing(dir, modified);
+    if (result != null) {
+      return result;
+    }
+
+    List<Entry> entries = new ArrayList<>();
+    boolean complete = true;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path path : stream) {
+        Entry entry = new Entry(path, readAttributes(path));
+        complete &= entry.getAttributes() != null;
+        entries.add(entry);
+      }
+    }
+    if (complete) {
+      put(dir, modified, entries);
+    }
+    return Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * @param dir
+   *          The directory
+   * @return The cached listing of the directory, or null if it isn't cached or
+   *         the directory has been modified since it was listed.
+   */
+  public static List<Entry> getListing(Path dir) {
+    try {
+      return getListing(dir, Files.getLastModifiedTime(dir));
+    } catch (IOException e) {
+      invalidate(dir);
+      return null;
+    }
+  }
+
+  /**
+   * @param dir
+   *          The directory
+   * @param modified
+   *          The current modification time of the directory
+   * @return The cached listing of the directory, or null if it isn't cached or
+   *         it was listed with a different modification time.
+   */
+  public static synchronized List<Entry> getListing(Path dir, FileTime modified) {
+    Listing listing = listings.get(dir);
+    if (listing == null) {
+      return null;
+    }
+    if (modified == null || !listing.modified.equals(modified)) {
+      remove(dir);
+      return null;
+    }
+    return listing.entries;
+  }
+
+  /**
+   * Adds a complete listing of a directory to the cache. Listings bigger than
+   * the cache itself are ignored.
+   *
+   * @param dir
+   *          The directory
+   * @param modified
+   *          The modification time of the directory, read before it was listed
+   * @param entries
+   *          All the entries of the directory, with their attributes
+   */
+  public static synchronized void put(Path dir, FileTime modified, List<Entry> entries) {
+    int max = getMaxEntries();
+    if (modified == null || entries.size() > max) {
+      return;
+    }
+    remove(dir);
+    Listing listing = new Listing(modified, entries);
+    listings.put(dir, listing);
+    cachedEntries += entries.size();
+
+    Iterator<Listing> iterator = listings.values().iterator();
+    while (cachedEntries > max && iterator.hasNext()) {
+      Listing eldest = iterator.next();
+      iterator.remove();
+      cachedEntries -= eldest.entries.size();
+    }
+  }
+
+  /**
+   * Gets the attributes of a path from the cached listing of its parent. The
+   * listing isn't checked against the modification time of the parent, so this
+   * is meant to avoid a second stat of an entry that has just been listed.
+   *
+   * @param path
+   *          The path
+   * @return The attributes of the path (links aren't followed) or null if the
+   *         listing of its parent isn't cached.
+   */
+  public static synchronized BasicFileAttributes getAttributes(Path path) {
+    Path parent = path.getParent();
+    if (parent == null) {
+      return null;
+    }
+    Listing listing = listings.get(parent);
+    if (listing == null) {
+      return null;
+    }
+    Entry entry = listing.index.get(path);
+    return entry == null ? null : entry.getAttributes();
+  }
+
+  /**
+   * Same as Files.isDirectory(path), but uses the cached attributes of the path
+   * when they exist.
+   *
+   * @param path
+   *          The path
+   * @return True if the path is a directory, false otherwise.
+   */
+  public static boolean isDirectory(Path path) {
+    BasicFileAttributes attrs = getAttributes(path);
+    if (attrs == null || attrs.isSymbolicLink()) {
+      return Files.isDirectory(path);
+    }
+    return attrs.isDirectory();
+  }
+
+  /**
+   * Removes the listing of a directory from the cache.
+   *
+   * @param dir
+   *          The directory
+   */
+  public static synchronized void invalidate(Path dir) {
+    remove(dir);
+  }
+
+  /**
+   * Removes all the listings from the cache.
+   */
+  public static synchronized void clear() {
+    listings.clear();
+    cachedEntries = 0;
+  }
+
+  private static void remove(Path dir) {
+    Listing removed = listings.remove(dir);
+    if (removed != null) {
+      cachedEntries -= removed.entries.size();
+    }
+  }
+
+  private static BasicFileAttributes readAttributes(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    } catch (IOException e) {
+      LOGGER.debug("Unable to read the attributes of {}", path, e);
+      return null;
+    }
+  }
+
+  /**
+   * An entry of a directory listing.
+   */
+  public static final class Entry {
+    private final Path path;
+    private final BasicFileAttributes attrs;
+
+    /**
+     * Creates a new Entry object.
+     *
+     * @param path
+     *          The path of the entry
+     * @param attrs
+     *          The attributes of the entry, read without following links, or
+     *          null if they couldn't be read
+     */
+    public Entry(Path path, BasicFileAttributes attrs) {
+      this.path = path;
+      this.attrs = attrs;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    public BasicFileAttributes getAttributes() {
+      return attrs;
+    }
+  }
+
+  private static final class Listing {
+    private final FileTime modified;
+    // in the order of the directory stream
+    private final List<Entry> entries;
+    private final Map<Path, Entry> index;
+
+    private Listing(FileTime modified, List<Entry> entries) {
+      this.modified = modified;
+      this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+      this.index = new HashMap<>(entries.size() * 4 / 3 + 1);
+      for (Entry entry : entries) {
+        this.index.put(entry.getPath(), entry);
+      }
+    }
+  }
+}
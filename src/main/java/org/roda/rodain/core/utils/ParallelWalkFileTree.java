@@ -0,0 +1,278 @@
+package org.roda.rodain.core.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import org.roda.rodain.core.ConfigurationManager;
+import org.roda.rodain.core.Constants;
+import org.roda.rodain.core.utils.DirectoryCache.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link WalkFileTree} that lists directories and reads the attributes of
+ * their entries concurrently, in a shared fork/join pool.
+ * <p/>
+ * <p>
+ * Only the I/O is done in parallel. The TreeVisitor callbacks are still called
+ * from the walker's thread, in the same order as Files.walkFileTree() would call
+ * them (a directory is pre visited before its entries and post visited after
+ * all of them), so the visitors don't need to be thread safe. When a directory
+ * is visited, the listings of its next sub directories are submitted to the
+ * pool, so they are usually ready by the time the walk reaches them. Only a
+ * bounded window of sub directories ahead of the one being visited is listed,
+ * so a directory with many sub directories doesn't fill the pool and the
+ * memory with listings that won't be used for a long time, or at all if the
+ * walk is terminated.
+ * </p>
+ *
+ * @author agent agent@local
+ * @since 18/10/2026.
+ */
+public class ParallelWalkFileTree extends WalkFileTree {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelWalkFileTree.class.getName());
+  private static final int DEFAULT_PARALLELISM = 8;
+  // directories with more entries than this have their attributes read by
+  // several tasks
+  private static final int ATTRIBUTES_THRESHOLD = 64;
+  // number of sub directories of a directory listed ahead of the one visited
+  private static final int PREFETCH_WINDOW = 16;
+  private static ForkJoinPool pool;
+
+  /**
+   * Creates a new ParallelWalkFileTree object.
+   *
+   * @param startPath
+   *          The Set of paths used to start the file tree walking.
+   * @param handler
+   *          The TreeVisitor that will use the information captured by the
+   *          ParallelWalkFileTree object
+   */
+  public ParallelWalkFileTree(Set<String> startPath, TreeVisitor handler) {
+    super(startPath, handler);
+  }
+
+  private static synchronized ForkJoinPool getPool() {
+    if (pool == null) {
+      int parallelism = ConfigurationManager.getConfigAsInteger(Constants.CONF_K_WALK_FILE_TREE_PARALLELISM,
+        DEFAULT_PARALLELISM);
+      pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+    return pool;
+  }
+
+  @Override
+  protected void walk(Path path) throws IOException {
+    if (!Files.isDirectory(path)) {
+      handler.visitFile(path, Files.readAttributes(path, BasicFileAttributes.class));
+      return;
+    }
+    // like Files.walkFileTree, a start path that is a link to a directory is
+    // visited as a file
+    BasicFileAttributes attrs;
+    try {
+      attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    } catch (IOException e) {
+      handler.visitFileFailed(path);
+      return;
+    }
+    if (attrs.isDirectory()) {
+      ListingTask task = new ListingTask(path, attrs.lastModifiedTime());
+      getPool().execute(task);
+      visitDirectory(path, attrs, task);
+    } else {
+      processedFiles++;
+      handler.visitFile(path, attrs);
+    }
+  }
+
+  /*
+   * Calls the handler for the directory and all of its entries, in the same
+   * order as Files.walkFileTree(). Returns false if the walk must stop.
+   */
+  private boolean visitDirectory(Path dir, BasicFileAttributes attrs, ListingTask task) {
+    Listing listing = getListing(task);
+    if (listing == null) {
+      return false;
+    }
+    if (listing.entries == null) {
+      // the directory couldn't be opened
+      handler.visitFileFailed(dir);
+      return isTerminated() == FileVisitResult.CONTINUE;
+    }
+
+    handler.preVisitDirectory(dir, attrs);
+    if (isTerminated() != FileVisitResult.CONTINUE) {
+      return false;
+    }
+
+    Entry[] entries = listing.entries;
+    ListingTask[] subTasks = new ListingTask[entries.length];
+    // the sub directories in [i, prefetched) have been submitted
+    int prefetched = 0;
+    int submitted = 0;
+    boolean proceed = true;
+    int i = 0;
+    for (; proceed && i < entries.length; i++) {
+      for (; submitted < PREFETCH_WINDOW && prefetched < entries.length; prefetched++) {
+        BasicFileAttributes entryAttrs = entries[prefetched].getAttributes();
+        if (entryAttrs != null && entryAttrs.isDirectory()) {
+          subTasks[prefetched] = new ListingTask(entries[prefetched].getPath(), entryAttrs.lastModifiedTime());
+          getPool().execute(subTasks[prefetched]);
+          submitted++;
+        }
+      }
+
+      Entry entry = entries[i];
+      // release the entries already visited, the listing can be big
+      entries[i] = null;
+      if (entry.getAttributes() == null) {
+        handler.visitFileFailed(entry.getPath());
+        proceed = isTerminated() == FileVisitResult.CONTINUE;
+      } else if (subTasks[i] != null) {
+        ListingTask subTask = subTasks[i];
+        subTasks[i] = null;
+        submitted--;
+        proceed = visitDirectory(entry.getPath(), entry.getAttributes(), subTask);
+      } else {
+        processedFiles++;
+        handler.visitFile(entry.getPath(), entry.getAttributes());
+        proceed = isTerminated() == FileVisitResult.CONTINUE;
+      }
+    }
+    if (!proceed) {
+      // the walk has been terminated, drop the listings still outstanding
+      for (; i < prefetched; i++) {
+        if (subTasks[i] != null) {
+          subTasks[i].cancel(false);
+        }
+      }
+      return false;
+    }
+
+    processedDirs++;
+    handler.postVisitDirectory(dir);
+    return isTerminated() == FileVisitResult.CONTINUE;
+  }
+
+  private Listing getListing(ListingTask task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      task.cancel(false);
+      // keep the interrupted status so that the walk is terminated
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      LOGGER.error("Error listing the directory {}", task.dir, e.getCause());
+      return new Listing(null);
+    }
+  }
+
+  private static final class Listing {
+    // null if the directory couldn't be opened
+    private final Entry[] entries;
+
+    private Listing(Entry[] entries) {
+      this.entries = entries;
+    }
+  }
+
+  /*
+   * Lists a directory and reads the attributes of its entries, without
+   * following links, like Files.walkFileTree() does. The listing is taken from
+   * the DirectoryCache when the directory hasn't changed, and complete listings
+   * are added to it.
+   */
+  private static final class ListingTask extends RecursiveTask<Listing> {
+    private final Path dir;
+    private final FileTime modified;
+
+    private ListingTask(Path dir, FileTime modified) {
+      this.dir = dir;
+      this.modified = modified;
+    }
+
+    @Override
+    protected Listing compute() {
+      List<Entry> cached = DirectoryCache.getListing(dir, modified);
+      if (cached != null) {
+        return new Listing(cached.toArray(new Entry[cached.size()]));
+      }
+
+      List<Path> paths = new ArrayList<>();
+      boolean complete = true;
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+        for (Path entry : stream) {
+          paths.add(entry);
+        }
+      } catch (DirectoryIteratorException e) {
+        // like Files.walkFileTree, the entries read until the error are still
+        // visited
+        LOGGER.debug("Error iterating the directory {}", dir, e);
+        complete = false;
+      } catch (IOException e) {
+        LOGGER.debug("Unable to open the directory {}", dir, e);
+        return new Listing(null);
+      }
+
+      Path[] entryPaths = paths.toArray(new Path[paths.size()]);
+      BasicFileAttributes[] attrs = new BasicFileAttributes[entryPaths.length];
+      new AttributesTask(entryPaths, attrs, 0, entryPaths.length).invoke();
+
+      Entry[] result = new Entry[entryPaths.length];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = new Entry(entryPaths[i], attrs[i]);
+        complete &= attrs[i] != null;
+      }
+      if (complete) {
+        DirectoryCache.put(dir, modified, Arrays.asList(result));
+      }
+      return new Listing(result);
+    }
+  }
+
+  private static final class AttributesTask extends RecursiveAction {
+    private final Path[] paths;
+    private final BasicFileAttributes[] attrs;
+    private final int from, to;
+
+    private AttributesTask(Path[] paths, BasicFileAttributes[] attrs, int from, int to) {
+      this.paths = paths;
+      this.attrs = attrs;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > ATTRIBUTES_THRESHOLD) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new AttributesTask(paths, attrs, from, middle), new AttributesTask(paths, attrs, middle, to));
+        return;
+      }
+      for (int i = from; i < to; i++) {
+        try {
+          attrs[i] = Files.readAttributes(paths[i], BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+          attrs[i] = null;
+        }
+      }
+    }
+  }
+}
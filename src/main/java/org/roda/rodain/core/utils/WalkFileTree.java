@@ -20,10 +20,11 @@ import org.slf4j.LoggerFactory;
 public class WalkFileTree extends Thread {
   private static final Logger LOGGER = LoggerFactory.getLogger(WalkFileTree.class.getName());
   private Set<String> paths;
-  private TreeVisitor handler;
-  private boolean cancelled = false;
+  protected TreeVisitor handler;
+  private volatile boolean cancelled = false;
 
-  private int processedFiles = 0, processedDirs = 0;
+  // only written by the walking thread, read by the progress updaters
+  protected volatile int processedFiles = 0, processedDirs = 0;
 
   /**
    * Creates a new WalkFileTree object.
@@ -40,48 +41,16 @@ public class WalkFileTree extends Thread {
   }
 
   /**
-   * Iterates the paths received in the constructor and uses each one in
-   * Files.walkFileTree().
+   * Iterates the paths received in the constructor and walks each one with
+   * {@link #walk(Path)}.
    */
   @Override
   public void run() {
     for (String startPath : paths) {
       handler.setStartPath(startPath);
       final Path path = Paths.get(startPath);
-      // walkFileTree doesn't work if the start path is a file, so we call the
-      // method directly
       try {
-        if (!Files.isDirectory(path)) {
-          handler.visitFile(path, Files.readAttributes(path, BasicFileAttributes.class));
-        } else {
-          Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-              processedFiles++;
-              handler.visitFile(file, attrs);
-              return isTerminated();
-            }
-
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-              handler.preVisitDirectory(dir, attrs);
-              return isTerminated();
-            }
-
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
-              processedDirs++;
-              handler.postVisitDirectory(dir);
-              return isTerminated();
-            }
-
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-              handler.visitFileFailed(file);
-              return isTerminated();
-            }
-          });
-        }
+        walk(path);
       } catch (AccessDeniedException e) {
         LOGGER.info("Access denied to file", e);
       } catch (IOException e) {
@@ -92,6 +61,51 @@ public class WalkFileTree extends Thread {
     handler.end();
   }
 
+  /**
+   * Walks the file tree that starts in the path received as parameter, using
+   * Files.walkFileTree().
+   *
+   * @param path
+   *          The path where the walk starts.
+   * @throws IOException
+   *           If the walk can't be completed.
+   */
+  protected void walk(Path path) throws IOException {
+    // walkFileTree doesn't work if the start path is a file, so we call the
+    // method directly
+    if (!Files.isDirectory(path)) {
+      handler.visitFile(path, Files.readAttributes(path, BasicFileAttributes.class));
+    } else {
+      Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+          processedFiles++;
+          handler.visitFile(file, attrs);
+          return isTerminated();
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          handler.preVisitDirectory(dir, attrs);
+          return isTerminated();
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+          processedDirs++;
+          handler.postVisitDirectory(dir);
+          return isTerminated();
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+          handler.visitFileFailed(file);
+          return isTerminated();
+        }
+      });
+    }
+  }
+
   /**
    * Cancels the execution of the WalkFileTree object.
    */
@@ -113,7 +127,7 @@ public class WalkFileTree extends Thread {
     return processedFiles;
   }
 
-  private FileVisitResult isTerminated() {
+  protected FileVisitResult isTerminated() {
     // terminate if the thread has been interrupted
     if (Thread.interrupted() || cancelled) {
       return FileVisitResult.TERMINATE;
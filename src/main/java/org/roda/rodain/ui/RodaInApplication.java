@@ -38,6 +38,7 @@ import org.apache.commons.lang3.LocaleUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.roda.rodain.core.ConfigurationManager;
 import org.roda.rodain.core.Constants;
+import org.roda.rodain.core.Constants.PathState;
 import org.roda.rodain.core.Controller;
 import org.roda.rodain.core.I18n;
 import org.roda.rodain.core.PathCollection;
@@ -64,6 +65,7 @@ import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -80,6 +82,8 @@ import java.util.stream.Collectors;
  */
 public class RodaInApplication extends Application {
   private static final Logger LOGGER = LoggerFactory.getLogger(RodaInApplication.class.getName());
+  // the path states kept between sessions
+  private static final Set<PathState> SNAPSHOT_STATES = EnumSet.of(PathState.IGNORED);
   private static Stage stage;
   private static FileExplorerPane fileExplorer;
   private static InspectionPane inspectionPane;
@@ -176,7 +180,15 @@ public class RodaInApplication extends Application {
     // fileExplorer.closeWatcher();
     VisitorStack.end();
     Footer.getInstance().cancelMemoryAutoUpdater();
-    Platform.exit();
+    // the snapshot can take a while with big trees, so it's written off the FX
+    // thread and the application only exits after it
+    Thread snapshotWriter = new Thread(() -> {
+      PathCollection.writeSnapshot(
+              ConfigurationManager.getRodainPath().resolve(Constants.RODAIN_PATH_STATES_SNAPSHOT_FILE),
+              SNAPSHOT_STATES);
+      Platform.exit();
+    }, "path-states-snapshot-writer");
+    snapshotWriter.start();
   }
 
   /**
@@ -333,6 +345,12 @@ public class RodaInApplication extends Application {
         ConfigurationManager.initialize();
         LOGGER.info("Done initializing RODA-in folders & properties");
 
+        // restore the ignored paths of the last session. Mapped paths aren't
+        // restored because the rules and SIPs that map them aren't either
+        PathCollection.loadSnapshot(
+            ConfigurationManager.getRodainPath().resolve(Constants.RODAIN_PATH_STATES_SNAPSHOT_FILE),
+            SNAPSHOT_STATES);
+
         // load the custom fonts
         Font.loadFont(ClassLoader.getSystemResource("fonts/Ubuntu-Regular.ttf").toExternalForm(), 10);
         Font.loadFont(ClassLoader.getSystemResource("fonts/Ubuntu-Medium.ttf").toExternalForm(), 10);
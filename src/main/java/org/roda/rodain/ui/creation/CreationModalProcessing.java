@@ -10,6 +10,7 @@ import org.roda.rodain.core.ConfigurationManager;
 import org.roda.rodain.core.Constants;
 import org.roda.rodain.core.I18n;
 import org.roda.rodain.core.creation.CreateSips;
+import org.roda.rodain.core.creation.SipCreationProgress;
 import org.roda.rodain.core.schema.Sip;
 import org.roda.rodain.core.utils.OpenPathInExplorer;
 import org.slf4j.Logger;
@@ -195,13 +196,13 @@ public class CreationModalProcessing extends BorderPane {
         Platform.runLater(new Runnable() {
           @Override
           public void run() {
-            int created = creator.getCreatedSipsCount();
-            int size = creator.getSipsCount();
-            int errors = creator.getErrorCount();
-            double etaDouble = creator.getTimeRemainingEstimate();
-            long startedTime = creator.getStartedTime();
-            updateETA(etaDouble);
-            double prog = creator.getProgress();
+            SipCreationProgress.Snapshot snapshot = creator.getProgressSnapshot();
+            int created = snapshot.getCreatedSipsCount();
+            int size = snapshot.getSipsCount();
+            int errors = snapshot.getErrorCount();
+            long startedTime = snapshot.getStartedTime();
+            updateETA(snapshot.getTimeRemainingEstimate());
+            double prog = snapshot.getProgress();
 
             if (errors > 0) {
               subtitleError.setText(errors + I18n.t(Constants.I18N_CREATIONMODALPROCESSING_ERRORS));
@@ -209,8 +210,8 @@ public class CreationModalProcessing extends BorderPane {
             subtitleSuccess.setText(String.format(subtitleFormat, created, size, (int) (prog * 100)));
             progress.setProgress(prog);
 
-            sipName.setText(creator.getSipName());
-            sipAction.setText(creator.getAction());
+            sipName.setText(snapshot.getSipName());
+            sipAction.setText(snapshot.getAction());
             // format elapsed time
             long millis = System.currentTimeMillis() - startedTime;
             long second = (millis / 1000) % 60;
@@ -219,7 +220,7 @@ public class CreationModalProcessing extends BorderPane {
             elapsedTime.setText(String.format("%02d:%02d:%02d", hour, minute, second));
 
             // stop the timer when all the SIPs have been created
-            if ((created + errors) == size) {
+            if (snapshot.isFinished()) {
               eta.setText(I18n.t(Constants.I18N_CREATIONMODALPROCESSING_FINISHED));
               progress.setProgress(100);
               finished();
@@ -2,19 +2,19 @@ package org.roda.rodain.ui.inspection.trees;
 
 import java.io.IOException;
 import java.nio.file.AccessDeniedException;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Observable;
 import java.util.Set;
 
 import org.roda.rodain.core.rules.TreeNode;
 import org.roda.rodain.core.rules.filters.ContentFilter;
+import org.roda.rodain.core.utils.DirectoryCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,26 +53,7 @@ public class ContentCreator extends Observable {
         visitFile(path, null);
       } else {
         try {
-          ContentCreator refToThis = this;
-          Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-              refToThis.visitFile(file, attrs);
-              return isTerminated();
-            }
-
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-              refToThis.preVisitDirectory(dir, attrs);
-              return isTerminated();
-            }
-
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
-              refToThis.postVisitDirectory(dir);
-              return isTerminated();
-            }
-          });
+          walk(path, Files.readAttributes(path, BasicFileAttributes.class));
         } catch (AccessDeniedException e) {
           LOGGER.info("Access denied to file", e);
         } catch (IOException e) {
@@ -84,12 +65,40 @@ public class ContentCreator extends Observable {
     return files;
   }
 
-  private FileVisitResult isTerminated() {
-    // terminate if the thread has been interrupted
-    if (Thread.interrupted() || cancelled) {
-      return FileVisitResult.TERMINATE;
+  /*
+   * Walks the directory like Files.walkFileTree() would, but the listings come
+   * from the DirectoryCache, which usually has them since the paths were just
+   * expanded in the file explorer. Returns false if the walk must stop.
+   */
+  private boolean walk(Path dir, BasicFileAttributes attrs) throws IOException {
+    List<DirectoryCache.Entry> entries = DirectoryCache.list(dir);
+    preVisitDirectory(dir, attrs);
+    if (isTerminated()) {
+      return false;
     }
-    return FileVisitResult.CONTINUE;
+    for (DirectoryCache.Entry entry : entries) {
+      BasicFileAttributes entryAttrs = entry.getAttributes();
+      if (entryAttrs == null) {
+        throw new IOException("Unable to read the attributes of " + entry.getPath());
+      }
+      if (entryAttrs.isDirectory()) {
+        if (!walk(entry.getPath(), entryAttrs)) {
+          return false;
+        }
+      } else {
+        visitFile(entry.getPath(), entryAttrs);
+        if (isTerminated()) {
+          return false;
+        }
+      }
+    }
+    postVisitDirectory(dir);
+    return !isTerminated();
+  }
+
+  private boolean isTerminated() {
+    // terminate if the thread has been interrupted
+    return Thread.interrupted() || cancelled;
   }
 
   private boolean filter(Path path) {
@@ -1,7 +1,6 @@
 package org.roda.rodain.ui.rules;
 
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -244,9 +243,9 @@ public class Rule extends Observable implements Observer, Comparable {
   /**
    * Updates the rule when notified by a SipPreviewCreator or a SipPreview.
    * <p>
-   * When the notification is from a SipPreviewCreator, the method creates new
-   * SipPreviewNodes until a maximum of 100 items. Finally, notifies the rule's
-   * observers of changes.
+   * When the notification is from a SipPreviewCreator, the method creates the
+   * SipPreviewNodes of the SIPs created since the last notification (at most a
+   * chunk of them). Finally, notifies the rule's observers of changes.
    * </p>
    * <p/>
    * <p>
@@ -315,11 +314,11 @@ public class Rule extends Observable implements Observer, Comparable {
   }
 
   private void updateSipsWithStructure(SipsWithStructure visitor) {
-    Set<PseudoItem> tree = visitor.getTree();
     Map<Path, Sip> descriptionObjectMap = visitor.getDescriptionObjects();
     Map<Path, SipPreview> sipPreviewMap = visitor.getSipPreviewMap();
 
-    for (PseudoItem item : tree) {
+    PseudoItem item;
+    while ((item = visitor.pollCompleted()) != null) {
       TreeItem<String> treeItem = recCreateNode(item, sipPreviewMap, descriptionObjectMap);
       if (treeItem instanceof SipPreviewNode) {
         SipPreviewNode sipPreviewNode = (SipPreviewNode) treeItem;
@@ -370,30 +369,21 @@ public class Rule extends Observable implements Observer, Comparable {
     Task<Void> task = new Task<Void>() {
       @Override
       protected Void call() throws Exception {
-        int paths = 0, removedPaths = 0;
+        // all the paths of the rule are set as NORMAL in a single batch
+        Set<Path> paths = new HashSet<>();
         for (SipPreview sip : sips.values()) {
           sip.setRemoved();
           for (SipRepresentation sr : sip.getRepresentations()) {
             for (TreeNode tn : sr.getFiles()) {
-              paths += tn.getFullTreePaths().size();
+              tn.addFullTreePaths(paths);
             }
           }
         }
 
         sipNodes.clear();
-        for (SipPreview sip : sips.values()) {
-          for (SipRepresentation sr : sip.getRepresentations()) {
-            for (TreeNode tn : sr.getFiles()) {
-              for (String path : tn.getFullTreePaths()) {
-                PathCollection.addPath(Paths.get(path), PathState.NORMAL);
-                removedPaths++;
-                float result = (float) removedPaths / paths;
-                setChanged();
-                notifyObservers(result);
-              }
-            }
-          }
-        }
+        PathCollection.applyStates(paths, PathState.NORMAL);
+        setChanged();
+        notifyObservers(1f);
         sips.clear();
         schemaNodes.clear();
         return null;
@@ -1,89 +1,157 @@
 package org.roda.rodain.ui.rules;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import org.roda.rodain.core.ConfigurationManager;
+import org.roda.rodain.core.Constants;
 import org.roda.rodain.core.Constants.VisitorState;
+import org.roda.rodain.core.utils.ParallelWalkFileTree;
 import org.roda.rodain.core.utils.TreeVisitor;
 import org.roda.rodain.core.utils.WalkFileTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javafx.concurrent.Task;
-
 /**
+ * Schedules the TreeVisitors created by the rules.
+ * <p/>
+ * <p>
+ * The visitors run in a pool of threads, so rules applied to unrelated folders
+ * don't wait for each other. Visitors whose paths overlap (one of the paths is
+ * the same or is inside a path of the other visitor) are run one at a time, in
+ * the order they were added, so that they never map the same paths at the same
+ * time.
+ * </p>
+ *
  * @author Andre Pereira apereira@keep.pt
  * @since 06-10-2015.
  */
 public class VisitorStack extends Observable {
   private static final Logger LOGGER = LoggerFactory.getLogger(VisitorStack.class.getName());
+  private static final int DEFAULT_POOL_SIZE = 4;
   private static ExecutorService visitors;
-  private HashMap<String, Future> futures;
-  private String runningTask;
+  // jobs queued or running, removed when they finish or are cancelled
+  private final Map<String, Job> jobs;
+  // jobs waiting for an overlapping job to finish, in the order they were added
+  private final Deque<Job> queue;
+  // jobs submitted to the pool, running or waiting for a free thread
+  private final Set<Job> submitted;
 
   /**
    * Creates a new VisitorStack object.
    */
   public VisitorStack() {
-    visitors = Executors.newSingleThreadExecutor();
-    futures = new HashMap<>();
+    int poolSize = ConfigurationManager.getConfigAsInteger(Constants.CONF_K_VISITOR_STACK_POOL_SIZE,
+      DEFAULT_POOL_SIZE);
+    visitors = Executors.newFixedThreadPool(Math.max(1, poolSize));
+    jobs = new HashMap<>();
+    queue = new ArrayDeque<>();
+    submitted = new HashSet<>();
   }
 
   /**
    * Adds a new TreeVisitor to the stack.
    * <p/>
    * <p>
-   * Creates a new WalkFileTree with the set of paths and TreeVisitor received
-   * as parameter. Wraps it in a Task and adds the Task to an ExecutorService.
+   * Creates a new ParallelWalkFileTree with the set of paths and TreeVisitor
+   * received as parameter and schedules it. The walk is run in one of the
+   * threads of the pool as soon as there's no other visitor running over the
+   * same paths.
    * </p>
    *
    * @param paths
    *          The set of paths associated in the Rule
    * @param vis
    *          The TreeVisitor created by the Rule
+   * @return The WalkFileTree, to get the progress of the visitor.
    * @see TreeVisitor
    * @see ExecutorService
    */
   public WalkFileTree add(Set<String> paths, TreeVisitor vis) {
-    final WalkFileTree walker = new WalkFileTree(paths, vis);
-    final String id = vis.getId();
-    Task toRun = new Task<Void>() {
-      @Override
-      public Void call() {
-        update();
-        walker.start();
-        try {
-          walker.join();
-        } catch (InterruptedException e) {
-          LOGGER.debug(e.getMessage());
-          walker.interrupt();
-        }
-        return null;
+    final WalkFileTree walker = new ParallelWalkFileTree(paths, vis);
+    Job job = new Job(vis.getId(), paths, walker);
+    synchronized (this) {
+      jobs.put(job.id, job);
+      queue.add(job);
+      schedule();
+    }
+    update();
+    return walker;
+  }
+
+  /*
+   * Submits the queued jobs that don't overlap a submitted job or an older
+   * queued job. Must be called while holding the stack's lock.
+   */
+  private void schedule() {
+    List<Job> blocked = new ArrayList<>();
+    Iterator<Job> iterator = queue.iterator();
+    while (iterator.hasNext()) {
+      Job job = iterator.next();
+      if (overlaps(job, submitted) || overlaps(job, blocked)) {
+        blocked.add(job);
+      } else {
+        iterator.remove();
+        submitted.add(job);
+        job.future = visitors.submit(() -> run(job));
       }
-    };
-    toRun.setOnRunning(event -> {
-      runningTask = id;
-      update();
-    });
-    // notify the observers when the task finishes
-    toRun.setOnSucceeded(event -> {
-      runningTask = null;
-      update();
-    });
+    }
+  }
 
-    toRun.setOnCancelled(event -> {
-      walker.interrupt();
-      update();
-    });
+  private static boolean overlaps(Job job, Collection<Job> others) {
+    for (Job other : others) {
+      for (Path path : job.paths) {
+        for (Path otherPath : other.paths) {
+          if (path.startsWith(otherPath) || otherPath.startsWith(path)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
 
-    Future fut = visitors.submit(toRun);
-    futures.put(vis.getId(), fut);
+  private void run(Job job) {
+    synchronized (this) {
+      if (job.state == VisitorState.VISITOR_CANCELLED) {
+        submitted.remove(job);
+        jobs.remove(job.id, job);
+        schedule();
+        return;
+      }
+      job.state = VisitorState.VISITOR_RUNNING;
+    }
     update();
-    return walker;
+    try {
+      // the walker is run in the pool's thread, there's no need to start it
+      job.walker.run();
+    } catch (Exception e) {
+      LOGGER.error("Error running the visitor {}", job.id, e);
+    } finally {
+      synchronized (this) {
+        if (job.state == VisitorState.VISITOR_RUNNING) {
+          job.state = VisitorState.VISITOR_DONE;
+        }
+        submitted.remove(job);
+        jobs.remove(job.id, job);
+        schedule();
+      }
+      update();
+    }
   }
 
   private void update() {
@@ -94,25 +162,20 @@ public class VisitorStack extends Observable {
   /**
    * @param visitorId
    *          The id of the TreeVisitor we want to know the state of.
-   * @return The state of the TreeVisitor.
+   * @return The state of the TreeVisitor, VISITOR_NOTSUBMITTED if it isn't
+   *         queued or running anymore.
    * @see TreeVisitor
    */
-  public VisitorState getState(String visitorId) {
-    Future fut = futures.get(visitorId);
-    if (fut == null)
+  public synchronized VisitorState getState(String visitorId) {
+    Job job = jobs.get(visitorId);
+    if (job == null)
       return VisitorState.VISITOR_NOTSUBMITTED;
-    if (runningTask != null && visitorId.equals(runningTask))
-      return VisitorState.VISITOR_RUNNING;
-    if (fut.isDone())
-      return VisitorState.VISITOR_DONE;
-    if (fut.isCancelled())
-      return VisitorState.VISITOR_CANCELLED;
-    else
-      return VisitorState.VISITOR_QUEUED;
+    return job.state;
   }
 
   /**
-   * Cancels the execution of the TreeVisitor received as parameter.
+   * Cancels the execution of the TreeVisitor received as parameter. If the
+   * visitor is still queued it never runs, otherwise its walk is stopped.
    *
    * @param vis
    *          The TreeVisitor to be canceled
@@ -120,11 +183,27 @@ public class VisitorStack extends Observable {
    * @see TreeVisitor
    */
   public boolean cancel(TreeVisitor vis) {
-    boolean result = false;
-    if (vis != null && futures.containsKey(vis.getId())) {
-      result = futures.get(vis.getId()).cancel(true);
+    if (vis == null) {
+      return false;
+    }
+    synchronized (this) {
+      Job job = jobs.get(vis.getId());
+      if (job == null || job.state == VisitorState.VISITOR_DONE || job.state == VisitorState.VISITOR_CANCELLED) {
+        return false;
+      }
+      boolean running = job.state == VisitorState.VISITOR_RUNNING;
+      job.state = VisitorState.VISITOR_CANCELLED;
+      job.walker.cancel();
+      if (queue.remove(job)) {
+        jobs.remove(job.id, job);
+        schedule();
+      } else if (running) {
+        // interrupts the walk if it's blocked waiting for a directory listing
+        job.future.cancel(true);
+      }
     }
-    return result;
+    update();
+    return true;
   }
 
   /**
@@ -136,4 +215,21 @@ public class VisitorStack extends Observable {
     if (visitors != null)
       visitors.shutdownNow();
   }
+
+  private static final class Job {
+    private final String id;
+    private final Set<Path> paths;
+    private final WalkFileTree walker;
+    private volatile VisitorState state = VisitorState.VISITOR_QUEUED;
+    private Future<?> future;
+
+    private Job(String id, Set<String> paths, WalkFileTree walker) {
+      this.id = id;
+      this.walker = walker;
+      this.paths = new HashSet<>();
+      for (String path : paths) {
+        this.paths.add(Paths.get(path).toAbsolutePath().normalize());
+      }
+    }
+  }
 }
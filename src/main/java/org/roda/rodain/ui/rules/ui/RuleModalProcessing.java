@@ -121,7 +121,9 @@ public class RuleModalProcessing extends BorderPane {
           sipsCreatedLabel.setText(String.format(sipsCreatedFormat, sips));
           filesProcessedLabel.setText(String.format(filesProcessedFormat, dirs, files));
 
-          if (visitorStack.getState(visitor.getId()) == VisitorState.VISITOR_DONE) {
+          // the visitor is no longer in the stack once it finishes
+          VisitorState state = visitorStack.getState(visitor.getId());
+          if (state != VisitorState.VISITOR_QUEUED && state != VisitorState.VISITOR_RUNNING) {
             close();
           }
         });
@@ -133,7 +135,6 @@ public class RuleModalProcessing extends BorderPane {
   }
 
   private void cancel() {
-    fileWalker.interrupt();
     creator.cancel();
     visitorStack.cancel(visitor);
 
@@ -10,6 +10,7 @@ import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.roda.rodain.core.ConfigurationManager;
 import org.roda.rodain.core.Constants;
@@ -46,6 +47,8 @@ public class SchemaNode extends TreeItem<String> implements Observer {
   private boolean removed = false;
 
   private Set<SchemaNode> schemaNodes;
+  // ids of the rules with an update waiting for the UI thread
+  private final Set<String> queuedUpdates = ConcurrentHashMap.newKeySet();
 
   /**
    * Creates a new SchemaNode
@@ -97,19 +100,15 @@ public class SchemaNode extends TreeItem<String> implements Observer {
       int count = rule.getSipCount();
       rules.put(id, count);
 
+      // the rule notifies several times while its SIPs are being created, only
+      // one update is queued at a time and it shows the latest nodes of the rule
+      if (!queuedUpdates.add(id)) {
+        return;
+      }
       Platform.runLater(() -> {
-        // replace the SIPs
-        if (sips.get(id) != null) {
-          getChildren().removeAll(sips.get(id));
-        }
-        if (ruleNodes.get(id) != null) {
-          getChildren().removeAll(ruleNodes.get(id));
-        }
-
-        // we don't need to add the nodes and SIPs if the rule has been removed
-        if (Constants.EVENT_REMOVED_RULE.equals(arg)) {
-          return;
-        }
+        queuedUpdates.remove(id);
+        // when the rule has been removed its nodes have been cleared, so all
+        // the nodes are removed
         Set<SipPreviewNode> nodes = new HashSet<>(rule.getSipNodes());
         Set<SchemaNode> schemas = new HashSet<>(rule.getSchemaNodes());
 
@@ -122,18 +121,49 @@ public class SchemaNode extends TreeItem<String> implements Observer {
             }
           }
         }
-        sips.put(id, nodes);
-        ruleNodes.put(id, schemas);
-        getChildren().addAll(nodes);
-        getChildren().addAll(schemas);
 
-        sortChildren();
+        // only the nodes that changed since the last update are added or
+        // removed
+        Set<TreeItem<String>> toRemove = new HashSet<>();
+        List<TreeItem<String>> toAdd = new ArrayList<>();
+        diff(sips.get(id), nodes, toRemove, toAdd);
+        diff(ruleNodes.get(id), schemas, toRemove, toAdd);
+        if (nodes.isEmpty() && schemas.isEmpty()) {
+          sips.remove(id);
+          ruleNodes.remove(id);
+        } else {
+          sips.put(id, nodes);
+          ruleNodes.put(id, schemas);
+        }
+        if (!toRemove.isEmpty()) {
+          getChildren().removeAll(toRemove);
+        }
+        if (!toAdd.isEmpty()) {
+          getChildren().addAll(toAdd);
+          sortChildren();
+        }
 
         RodaInApplication.getSchemePane().forceUpdateSelectionIcons();
       });
     }
   }
 
+  private static <T extends TreeItem<String>> void diff(Set<T> previous, Set<T> current,
+    Set<TreeItem<String>> toRemove, List<TreeItem<String>> toAdd) {
+    if (previous != null) {
+      for (T item : previous) {
+        if (!current.contains(item)) {
+          toRemove.add(item);
+        }
+      }
+    }
+    for (T item : current) {
+      if (previous == null || !previous.contains(item)) {
+        toAdd.add(item);
+      }
+    }
+  }
+
   /**
    * Adds a new Rule to the SchemaNode.
    *
@@ -22,7 +22,6 @@ import org.roda.rodain.core.I18n;
 import org.roda.rodain.core.PathCollection;
 import org.roda.rodain.core.source.ComputeDirectorySize;
 import org.roda.rodain.core.source.representation.SourceDirectory;
-import org.roda.rodain.core.utils.WalkFileTree;
 import org.roda.rodain.ui.Footer;
 import org.roda.rodain.ui.RodaInApplication;
 import org.roda.rodain.ui.source.items.SourceTreeDirectory;
@@ -88,7 +87,7 @@ public class FileExplorerPane extends BorderPane implements Observer {
 
   // This thread is used to walk a directory's file tree and update the UI
   // periodically with the SIZE and file count
-  private WalkFileTree computeThread;
+  private Thread computeThread;
 
   /**
    * Creates a new FileExplorerPane object.
@@ -372,9 +371,10 @@ public class FileExplorerPane extends BorderPane implements Observer {
     // we need to stop the directory size compute thread to avoid more than one
     // thread updating the ui at the same time
     stopComputeThread();
-    computeSize = new ComputeDirectorySize();
+    computeSize = new ComputeDirectorySize(paths);
     computeSize.addObserver(this);
-    computeThread = new WalkFileTree(paths, computeSize);
+    computeThread = new Thread(computeSize);
+    computeThread.setDaemon(true);
     computeThread.start();
   }
 
@@ -404,6 +404,8 @@ public class FileExplorerPane extends BorderPane implements Observer {
   }
 
   private void stopComputeThread() {
+    if (computeSize != null)
+      computeSize.cancel();
     if (computeThread != null)
       computeThread.interrupt();
   }
@@ -490,7 +492,7 @@ public class FileExplorerPane extends BorderPane implements Observer {
       SourceTreeDirectory parent = item.getParentDir();
       if (!isShowIgnored()) {
         if (parent != null) {
-          parent.hideIgnored();
+          parent.refreshView();
         }
         treeView.getSelectionModel().clearSelection();
       } else {// force update
@@ -513,13 +515,9 @@ public class FileExplorerPane extends BorderPane implements Observer {
     if (realRoots == null || realRoots.isEmpty())
       return;
 
+    showFiles = !isShowFiles();
     for (SourceTreeDirectory root : realRoots.values()) {
-      showFiles = !isShowFiles();
-      if (isShowFiles()) {
-        root.showFiles();
-      } else {
-        root.hideFiles();
-      }
+      root.refreshView();
     }
 
     // force update
@@ -533,11 +531,7 @@ public class FileExplorerPane extends BorderPane implements Observer {
 
     showIgnored = !isShowIgnored();
     for (SourceTreeDirectory root : realRoots.values()) {
-      if (isShowIgnored()) {
-        root.showIgnored();
-      } else {
-        root.hideIgnored();
-      }
+      root.refreshView();
     }
 
     // force update
@@ -551,11 +545,7 @@ public class FileExplorerPane extends BorderPane implements Observer {
 
     showMapped = !isShowMapped();
     for (SourceTreeDirectory root : realRoots.values()) {
-      if (isShowMapped()) {
-        root.showMapped();
-      } else {
-        root.hideMapped();
-      }
+      root.refreshView();
     }
 
     // force update
@@ -1,18 +1,22 @@
 package org.roda.rodain.ui.source.items;
 
 import java.io.File;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.WatchKey;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.roda.rodain.core.Constants;
 import org.roda.rodain.core.Constants.PathState;
@@ -32,6 +36,18 @@ import javafx.scene.control.TreeItem;
 import javafx.scene.image.Image;
 
 /**
+ * A directory of the file explorer.
+ * <p/>
+ * <p>
+ * The loaded children of the directory are kept in an index of compact
+ * entries, sorted like they are shown (directories first, then files, by
+ * name). The TreeItems are only created for the visible rows, i.e., the entries
+ * that pass the hide mapped/ignored/files filters, up to a window that grows
+ * each time the user asks to load more. Hiding or showing items doesn't move
+ * objects around, the visible rows are computed again from the index and the
+ * items of the files that stop being visible are released.
+ * </p>
+ *
  * @author Andre Pereira apereira@keep.pt
  * @since 17-09-2015.
  */
@@ -46,15 +62,35 @@ public class SourceTreeDirectory extends SourceTreeItem {
   public static final Image folderCollapseExportImage = new Image(
     ClassLoader.getSystemResourceAsStream(Constants.RSC_ICON_FOLDER_EXPORT));
   public static final Comparator<? super TreeItem> comparator = createComparator();
+  // number of rows added to the window when there are loaded rows that aren't
+  // shown yet, and the size the window goes back to when the directory is
+  // collapsed
+  private static final int WINDOW_PAGE_SIZE = 1000;
+  private static final Comparator<ChildEntry> ENTRY_ORDER = (e1, e2) -> e1.name.compareToIgnoreCase(e2.name);
+  // the view changes are serialized, the loading of directories can run in
+  // parallel up to the size of the pool
+  private static final ExecutorService visibilityExecutor = createExecutor(1, "source-tree-visibility");
+  private static final ExecutorService loadingExecutor = createExecutor(4, "source-tree-loading");
 
   public boolean expanded = false;
   private SourceDirectory directory;
   private String fullPath;
   private WatchKey watchKey;
 
-  private HashSet<SourceTreeItem> ignored;
-  private HashSet<SourceTreeItem> mapped;
-  private HashSet<SourceTreeFile> files;
+  // the index of the loaded children, guarded by this object
+  private final List<ChildEntry> directoryEntries = new ArrayList<>();
+  private final List<ChildEntry> fileEntries = new ArrayList<>();
+  private boolean sorted = true;
+  private boolean loaded = false;
+  private int window = 0;
+  private boolean moreRows = false;
+  private int materializedFiles = 0;
+  // incremented each time the visible rows are computed, so that an older view
+  // never replaces a newer one
+  private volatile int viewVersion = 0;
+  // true while a refresh of the view of this directory is queued and hasn't
+  // started, so that the refreshes requested meanwhile are coalesced
+  private final AtomicBoolean refreshPending = new AtomicBoolean();
 
   public SourceTreeDirectory(Path file, SourceDirectory directory, PathState st, SourceTreeDirectory parent) {
     this(file, directory, parent);
@@ -68,9 +104,6 @@ public class SourceTreeDirectory extends SourceTreeItem {
     this.fullPath = file.toString();
     this.parent = parent;
     state = PathCollection.getState(Paths.get(fullPath));
-    ignored = new HashSet<>();
-    mapped = new HashSet<>();
-    files = new HashSet<>();
 
     this.getChildren().add(new SourceTreeLoading());
 
@@ -90,6 +123,10 @@ public class SourceTreeDirectory extends SourceTreeItem {
       SourceTreeDirectory source = SourceTreeDirectory.class.cast(event.getSource());
       if (!source.isExpanded()) {
         source.expanded = false;
+        // the event is also triggered in all the parents of the item
+        if (source == this) {
+          shrinkWindow();
+        }
       }
     });
   }
@@ -99,292 +136,49 @@ public class SourceTreeDirectory extends SourceTreeItem {
     fullPath = "";
     directory = null;
     state = PathState.NORMAL;
-    ignored = new HashSet<>();
-    mapped = new HashSet<>();
-    files = new HashSet<>();
-  }
-
-  /**
-   * Creates a task to hide all this item's mapped items. The task is needed to
-   * prevent the UI thread from hanging due to the computations.
-   * <p/>
-   * First, it removes all the children with the MAPPED state and adds them to the
-   * mapped set, so that they can be shown at a later date. If a child is a
-   * directory, this method is called in that item. Finally, clears the children
-   * and adds the new list of items.
-   *
-   * @see #showMapped()
-   */
-  public synchronized void hideMapped() {
-    final ArrayList<TreeItem<String>> newChildren = new ArrayList<>(getChildren());
-    Task<Void> task = new Task<Void>() {
-      @Override
-      protected Void call() throws Exception {
-        Set<TreeItem> toRemove = new HashSet<>();
-        for (TreeItem sti : newChildren) {
-          SourceTreeItem item = (SourceTreeItem) sti;
-          if (item.getState() == PathState.MAPPED || item instanceof SourceTreeLoadMore) {
-            mapped.add(item);
-            toRemove.add(sti);
-          }
-          if (item instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) item).hideMapped();
-        }
-        newChildren.removeAll(toRemove);
-        return null;
-      }
-    };
-    task.setOnSucceeded(event -> getChildren().setAll(newChildren));
-
-    new Thread(task).start();
-  }
-
-  /**
-   * Creates a task to show all this item's mapped items. The task is needed to
-   * prevent the UI thread from hanging due to the computations.
-   * <p/>
-   * First, it adds all the items in the mapped set, which are the previously
-   * hidden items, and clears the set. We need to be careful in this step because
-   * if the hiddenFiles flag is true, then we must hide the mapped items that are
-   * files. Then makes a call to this method for all its children and hidden
-   * ignored items. Finally, clears the children, adds the new list of items, and
-   * sorts them.
-   *
-   * @see #sortChildren()
-   * @see #hideMapped()
-   */
-  public synchronized void showMapped() {
-    final ArrayList<TreeItem<String>> newChildren = new ArrayList<>(getChildren());
-    Task<Void> task = new Task<Void>() {
-      @Override
-      protected Void call() throws Exception {
-        for (SourceTreeItem sti : mapped) {
-          if (sti instanceof SourceTreeFile && !FileExplorerPane.isShowFiles()) {
-            files.add((SourceTreeFile) sti);
-          } else
-            newChildren.add(sti);
-        }
-        mapped.clear();
-        for (TreeItem sti : newChildren) {
-          if (sti instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) sti).showMapped();
-        }
-        for (SourceTreeItem sti : ignored) {
-          if (sti instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) sti).showMapped();
-        }
-        return null;
-      }
-    };
-
-    task.setOnSucceeded(event -> {
-      getChildren().setAll(newChildren);
-      sortChildren();
-    });
-
-    new Thread(task).start();
-  }
-
-  /**
-   * Creates a task to hide all this item's ignored items. The task is needed to
-   * prevent the UI thread from hanging due to the computations.
-   * <p/>
-   * First, it removes all the children with the IGNORED state and adds them to
-   * the ignored set, so that they can be shown at a later date. If a child is a
-   * directory, this method is called in that item. Then, calls this method for
-   * this item's children directories, that are in the hidden mapped items set.
-   * Finally, clears the children and adds the new list of items.
-   *
-   * @see #showIgnored()
-   */
-  public synchronized void hideIgnored() {
-    final ArrayList<TreeItem<String>> children = new ArrayList<>(getChildren());
-    Task<Void> task = new Task<Void>() {
-      @Override
-      protected Void call() throws Exception {
-        Set<TreeItem> toRemove = new HashSet<>();
-        for (TreeItem sti : children) {
-          SourceTreeItem item = (SourceTreeItem) sti;
-          if (item.getState() == PathState.IGNORED || sti instanceof SourceTreeLoadMore) {
-            ignored.add(item);
-            toRemove.add(sti);
-          }
-          if (item instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) item).hideIgnored();
-        }
-        children.removeAll(toRemove);
-        for (SourceTreeItem item : mapped) {
-          if (item instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) item).hideIgnored();
-        }
-        return null;
-      }
-    };
-    task.setOnSucceeded(event -> getChildren().setAll(children));
-
-    new Thread(task).start();
   }
 
   /**
-   * Creates a task to show all this item's ignored items. The task is needed to
-   * prevent the UI thread from hanging due to the computations.
-   * <p/>
-   * First, it adds all the items in the ignored set, which are the previously
-   * hidden items, and clears the set. We need to be careful in this step because
-   * if the hiddenFiles flag is true, then we must hide the ignored items that are
-   * files. Then makes a call to this method for all its children and hidden
-   * mapped items. Finally, clears the children, adds the new list of items, and
-   * sorts them.
-   *
-   * @see #sortChildren()
-   * @see #hideIgnored()
+   * Computes again the visible children of this item and of all the loaded
+   * directories under it, using the current hide mapped/ignored/files flags of
+   * the FileExplorerPane. The rows are computed in a single task in the
+   * background, to prevent the UI thread from hanging, and then set all at once
+   * in the UI thread.
    */
-  public synchronized void showIgnored() {
-    final ArrayList<TreeItem<String>> newChildren = new ArrayList<>(getChildren());
-    Task<Void> task = new Task<Void>() {
-      @Override
-      protected Void call() throws Exception {
-        for (SourceTreeItem sti : ignored) {
-          if (sti instanceof SourceTreeFile && !FileExplorerPane.isShowFiles()) {
-            files.add((SourceTreeFile) sti);
-          } else
-            newChildren.add(sti);
-        }
-        ignored.clear();
-        for (TreeItem sti : newChildren) {
-          if (sti instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) sti).showIgnored();
-        }
-        for (SourceTreeItem sti : mapped) {
-          if (sti instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) sti).showIgnored();
-        }
-        return null;
-      }
-    };
-    task.setOnSucceeded(event -> {
-      getChildren().setAll(newChildren);
-      sortChildren();
-    });
-    new Thread(task).start();
-  }
-
-  /**
-   * Creates a task to hide all this item's file items. The task is needed to
-   * prevent the UI thread from hanging due to the computations.
-   * <p/>
-   * First, it removes all the children that are a file and adds them to the files
-   * set, so that they can be shown at a later date. If a child is a directory,
-   * this method is called in that item. Finally, clears the children and adds the
-   * new list of items.
-   *
-   * @see #showFiles() ()
-   */
-  public synchronized void hideFiles() {
-    final ArrayList<TreeItem<String>> children = new ArrayList<>(getChildren());
-    Task<Void> task = new Task<Void>() {
-      @Override
-      protected Void call() throws Exception {
-        Set<TreeItem> toRemove = new HashSet<>();
-        for (TreeItem sti : children) {
-          if (sti instanceof SourceTreeFile) {
-            files.add((SourceTreeFile) sti);
-            toRemove.add(sti);
-          } else {
-            SourceTreeItem item = (SourceTreeItem) sti;
-            if (item instanceof SourceTreeDirectory)
-              ((SourceTreeDirectory) item).hideFiles();
-          }
-        }
-        children.removeAll(toRemove);
-        return null;
-      }
-    };
-    task.setOnSucceeded(event -> getChildren().setAll(children));
-    new Thread(task).start();
-  }
-
-  /**
-   * Creates a task to show all this item's file items. The task is needed to
-   * prevent the UI thread from hanging due to the computations.
-   * <p/>
-   * First, it adds all the items in the files set, which are the previously
-   * hidden items, and clears the set. Then makes a call to this method for all
-   * its children and hidden ignored/mapped items. Finally, clears the children,
-   * adds the new list of items, and sorts them.
-   *
-   * @see #sortChildren()
-   * @see #hideFiles() ()
-   */
-  public synchronized void showFiles() {
-    final ArrayList<TreeItem<String>> newChildren = new ArrayList<>(getChildren());
-    Task<Void> task = new Task<Void>() {
-      @Override
-      protected Void call() throws Exception {
-        for (SourceTreeItem sti : files) {
-          newChildren.add(sti);
-        }
-        files.clear();
-        for (TreeItem sti : newChildren) {
-          if (sti instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) sti).showFiles();
-        }
-        for (SourceTreeItem sti : ignored) {
-          if (sti instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) sti).showFiles();
-        }
-        for (SourceTreeItem sti : mapped) {
-          if (sti instanceof SourceTreeDirectory)
-            ((SourceTreeDirectory) sti).showFiles();
-        }
-        return null;
-      }
-    };
-    task.setOnSucceeded(event -> {
-      getChildren().setAll(newChildren);
-      sortChildren();
-    });
-    new Thread(task).start();
+  public void refreshView() {
+    submitVisibilityChange(updates -> collectView(updates, true));
   }
 
   /**
    * @return The set of the ignored items in the directory.
    */
-  public synchronized Set<String> getIgnored() {
+  public Set<String> getIgnored() {
     Set<String> result = new HashSet<>();
-    // we need to include the items that are being shown and the hidden
-    for (SourceTreeItem sti : ignored) {
-      result.add(sti.getPath());
-    }
-    for (TreeItem sti : getChildren()) {
-      SourceTreeItem item = (SourceTreeItem) sti;
-      if (item instanceof SourceTreeDirectory)
-        result.addAll(((SourceTreeDirectory) item).getIgnored());
-
-      if (item.getState() == PathState.IGNORED)
-        result.add(item.getPath());
-    }
+    collectPaths(PathState.IGNORED, result);
     return result;
   }
 
   /**
    * @return The set of the mapped items in the directory.
    */
-  public synchronized Set<String> getMapped() {
+  public Set<String> getMapped() {
     Set<String> result = new HashSet<>();
-    // we need to include the items that are being shown and the hidden
-    for (SourceTreeItem sti : mapped) {
-      result.add(sti.getPath());
-    }
-    for (TreeItem sti : getChildren()) {
-      SourceTreeItem item = (SourceTreeItem) sti;
-      if (item instanceof SourceTreeDirectory)
-        result.addAll(((SourceTreeDirectory) item).getMapped());
+    collectPaths(PathState.MAPPED, result);
+    return result;
+  }
 
-      if (item.getState() == PathState.MAPPED)
-        result.add(item.getPath());
+  // we need to include the items that are being shown and the hidden
+  private synchronized void collectPaths(PathState st, Set<String> result) {
+    for (List<ChildEntry> entries : Arrays.asList(directoryEntries, fileEntries)) {
+      for (ChildEntry entry : entries) {
+        if (getState(entry) == st) {
+          result.add(entry.source.getPath().toString());
+        }
+        if (entry.item instanceof SourceTreeDirectory) {
+          ((SourceTreeDirectory) entry.item).collectPaths(st, result);
+        }
+      }
     }
-    return result;
   }
 
   private static Comparator createComparator() {
@@ -481,185 +275,243 @@ public class SourceTreeDirectory extends SourceTreeItem {
   }
 
   /**
-   * Creates a task to load the items to a temporary collection, otherwise the UI
-   * will hang while accessing the disk. Then, sets the new collection as the
-   * item's children.
+   * Creates a task to load more rows, otherwise the UI will hang while
+   * accessing the disk. If there are loaded rows that aren't shown yet, the
+   * window is extended, otherwise the next page of the directory is loaded.
+   * Then, sets the new rows as the item's children.
    */
-  public synchronized void loadMore() {
-    final ArrayList<TreeItem<String>> children = new ArrayList<>(getChildren());
+  public void loadMore() {
     addToWatcher();
 
-    // Remove "loading" items
-    List<Object> toRemove = children.stream()
-      .filter(p -> p instanceof SourceTreeLoading || p instanceof SourceTreeLoadMore).collect(Collectors.toList());
-    children.removeAll(toRemove);
-
-    // First we access the disk and save the loaded items to a temporary
-    // collection
-    Task<Integer> task = new Task<Integer>() {
+    Task<ChildrenUpdate> task = new Task<ChildrenUpdate>() {
       @Override
-      protected Integer call() throws Exception {
-        SortedMap<String, SourceItem> loaded = getDirectory().loadMore();
+      protected ChildrenUpdate call() throws Exception {
         long startTime = System.currentTimeMillis();
+        boolean readDirectory;
+        synchronized (SourceTreeDirectory.this) {
+          readDirectory = !moreRows;
+          if (!readDirectory) {
+            window += WINDOW_PAGE_SIZE;
+          }
+        }
 
-        if (!loaded.isEmpty()) {
-          // Add new items
-          for (String sourceItem : loaded.keySet()) {
-            addChild(children, sourceItem);
+        // the disk is accessed without holding the lock, the index is only
+        // changed after the page has been read
+        SortedMap<String, SourceItem> loadedItems = readDirectory ? getDirectory().loadMore()
+          : Collections.emptySortedMap();
+        synchronized (SourceTreeDirectory.this) {
+          for (SourceItem sourceItem : loadedItems.values()) {
+            addEntry(sourceItem);
           }
-          // check if there's more files to load
-          if (directory.isStreamOpen())
-            children.add(new SourceTreeLoadMore());
+          window += loadedItems.size();
+          loaded = true;
+          ChildrenUpdate update = new ChildrenUpdate(SourceTreeDirectory.this, computeView());
+          LOGGER.debug("Done adding more child (nr: {} -> millis: {})", loadedItems.size(),
+            (System.currentTimeMillis() - startTime));
+          return update;
         }
-        Collections.sort(children, comparator);
-        LOGGER.debug("Done adding more child (nr: {} -> millis: {})", loaded.size(),
-          (System.currentTimeMillis() - startTime));
-        return loaded.size();
       }
     };
 
     // After everything is loaded, we add all the items to the TreeView at once.
-    task.setOnSucceeded(event ->
-    // Set the children
-    getChildren().setAll(children));
+    task.setOnSucceeded(event -> task.getValue().apply());
+    task.setOnFailed(event -> LOGGER.error("Error loading the items of {}", fullPath, task.getException()));
 
-    new Thread(task).start();
+    loadingExecutor.execute(task);
   }
 
-  private void addChild(List children, String sourceItem) {
-    Path sourceItemPath = Paths.get(sourceItem);
-
-    PathState newState = PathCollection.getState(sourceItemPath);
-    if (IgnoredFilter.isIgnored(sourceItemPath)) {
-      newState = PathState.IGNORED;
+  /*
+   * Adds an entry to the index. The directories that match the ignore rules
+   * aren't shown at all.
+   */
+  private void addEntry(SourceItem sourceItem) {
+    boolean isDirectory = sourceItem instanceof SourceDirectory;
+    boolean ignoredByRule = IgnoredFilter.isIgnored(sourceItem.getPath(), isDirectory);
+    if (isDirectory && ignoredByRule) {
+      return;
     }
-
-    SourceTreeItem item;
-    if (Files.isDirectory(sourceItemPath)) {
-      if (newState != PathState.IGNORED) {
-        item = new SourceTreeDirectory(sourceItemPath, directory.getChildDirectory(sourceItemPath), newState, this);
-      } else {
-        item = null;
-      }
+    ChildEntry entry = new ChildEntry(sourceItem, isDirectory, ignoredByRule);
+    if (isDirectory) {
+      directoryEntries.add(entry);
     } else {
-      item = new SourceTreeFile(sourceItemPath, newState, this);
+      fileEntries.add(entry);
     }
+    sorted = false;
+  }
 
-    if (item != null) {
-      switch (newState) {
-        case IGNORED:
-          addChildIgnored(children, item);
-          break;
-        case MAPPED:
-          addChildMapped(children, item);
-          break;
-        case NORMAL:
-          if (item instanceof SourceTreeFile)
-            if (FileExplorerPane.isShowFiles())
-              children.add(item);
-            else
-              files.add((SourceTreeFile) item);
-          else
-            children.add(item);
-          break;
-        default:
+  /*
+   * Computes the visible rows, creating the items that are inside the window
+   * and releasing the items of the files that aren't. Must be called with the
+   * lock of this object.
+   */
+  private List<TreeItem<String>> computeView() {
+    if (!sorted) {
+      // the new entries are appended as a sorted run, so this is a merge
+      directoryEntries.sort(ENTRY_ORDER);
+      fileEntries.sort(ENTRY_ORDER);
+      sorted = true;
+    }
+    boolean showFiles = FileExplorerPane.isShowFiles();
+    boolean showMapped = FileExplorerPane.isShowMapped();
+    boolean showIgnored = FileExplorerPane.isShowIgnored();
+
+    List<TreeItem<String>> view = new ArrayList<>();
+    moreRows = false;
+    for (ChildEntry entry : directoryEntries) {
+      if (isVisible(entry, showMapped, showIgnored)) {
+        if (view.size() < window) {
+          view.add(materialize(entry));
+        } else {
+          moreRows = true;
+        }
       }
-      PathCollection.addItem(item);
     }
+    for (ChildEntry entry : fileEntries) {
+      // once it's known if there are more rows, only the materialized items
+      // need to be visited
+      if ((moreRows || !showFiles) && materializedFiles == 0) {
+        break;
+      }
+      boolean visible = showFiles && isVisible(entry, showMapped, showIgnored);
+      if (visible && view.size() < window) {
+        view.add(materialize(entry));
+      } else {
+        moreRows |= visible;
+        release(entry);
+      }
+    }
+    if (moreRows || directory.isStreamOpen()) {
+      view.add(new SourceTreeLoadMore());
+    }
+    viewVersion++;
+    return view;
   }
 
-  private void addChildIgnored(List children, SourceTreeItem item) {
-    if (FileExplorerPane.isShowIgnored()) {
-      if (item instanceof SourceTreeFile && !FileExplorerPane.isShowFiles()) {
-        files.add((SourceTreeFile) item);
-      } else
-        children.add(item);
-    } else
-      ignored.add(item);
+  private boolean isVisible(ChildEntry entry, boolean showMapped, boolean showIgnored) {
+    PathState st = getState(entry);
+    return (showMapped || st != PathState.MAPPED) && (showIgnored || st != PathState.IGNORED);
   }
 
-  private void addChildMapped(List children, SourceTreeItem item) {
-    if (FileExplorerPane.isShowMapped()) {
-      if (item instanceof SourceTreeFile && !FileExplorerPane.isShowFiles()) {
-        files.add((SourceTreeFile) item);
-      } else
-        children.add(item);
-    } else
-      mapped.add(item);
+  private PathState getState(ChildEntry entry) {
+    if (entry.item != null) {
+      return entry.item.getState();
+    }
+    if (entry.ignoredByRule) {
+      return PathState.IGNORED;
+    }
+    return PathCollection.getState(entry.source.getPath());
   }
 
-  public synchronized void removeChild(SourceTreeItem item) {
-    getChildren().remove(item);
-    mapped.remove(item);
-    ignored.remove(item);
-    files.remove(item);
+  private SourceTreeItem materialize(ChildEntry entry) {
+    if (entry.item == null) {
+      Path path = entry.source.getPath();
+      PathState st = getState(entry);
+      // the SourceDirectory already knows if the child is a directory, there's
+      // no need to read its attributes again
+      if (entry.directory) {
+        entry.item = new SourceTreeDirectory(path, (SourceDirectory) entry.source, st, this);
+      } else {
+        entry.item = new SourceTreeFile(path, st, this);
+        materializedFiles++;
+      }
+      PathCollection.addItem(entry.item);
+    }
+    return entry.item;
   }
 
-  /**
-   * Moves the children with the wrong state to the correct collection.
-   *
-   * <p>
-   * The normal items in the mapped collection are moved to the children
-   * collection.
-   * </p>
-   *
-   * <p>
-   * If the mapped items are hidden, moves the mapped items in the children
-   * collection to the mapped collection.
-   * </p>
-   * <p>
-   * If the ignored items are hidden, moves the ignored items in the children
-   * collection to the ignored collection.
-   * </p>
+  /*
+   * The items of the directories are kept, since they hold the loaded rows of
+   * their sub directories.
    */
-  public synchronized void moveChildrenWrongState() {
-    Platform.runLater(() -> {
-      Set<SourceTreeItem> toRemove = new HashSet<>();
-      boolean modified = false;
-      // Move NORMAL items from the mapped set
-      for (SourceTreeItem sti : mapped) {
-        if (sti.getState() == PathState.NORMAL) {
-          toRemove.add(sti);
-          getChildren().add(sti);
+  private void release(ChildEntry entry) {
+    if (entry.item != null && !entry.directory) {
+      PathCollection.removeItem(entry.item);
+      entry.item = null;
+      materializedFiles--;
+    }
+  }
+
+  private synchronized void collectView(List<ChildrenUpdate> updates, boolean recursive) {
+    if (directory == null || !loaded) {
+      return;
+    }
+    updates.add(new ChildrenUpdate(this, computeView()));
+    if (recursive) {
+      for (ChildEntry entry : directoryEntries) {
+        if (entry.item != null) {
+          ((SourceTreeDirectory) entry.item).collectView(updates, true);
         }
       }
-      mapped.removeAll(toRemove);
-      // Move NORMAL items from the ignored set
-      for (SourceTreeItem sti : ignored) {
-        if (sti.getState() == PathState.NORMAL) {
-          toRemove.add(sti);
-          getChildren().add(sti);
+    }
+  }
+
+  private void shrinkWindow() {
+    submitVisibilityChange(updates -> {
+      synchronized (this) {
+        if (window > WINDOW_PAGE_SIZE) {
+          window = WINDOW_PAGE_SIZE;
+          collectView(updates, false);
         }
       }
-      ignored.removeAll(toRemove);
-
-      if (!toRemove.isEmpty())
-        modified = true;
-
-      if (!FileExplorerPane.isShowMapped()) {
-        toRemove = new HashSet<>();
-        for (TreeItem ti : getChildren()) {
-          SourceTreeItem sti = (SourceTreeItem) ti;
-          if (sti.getState() == PathState.MAPPED || sti instanceof SourceTreeLoadMore) {
-            toRemove.add(sti);
-            mapped.add(sti);
-          }
-        }
-        getChildren().removeAll(toRemove);
+    });
+  }
+
+  /*
+   * Runs a view change in the visibility executor. The executor has a single
+   * thread, so the changes are applied in the order they were requested and
+   * never walk the same directories at the same time.
+   */
+  private static void submitVisibilityChange(Consumer<List<ChildrenUpdate>> change) {
+    visibilityExecutor.execute(() -> {
+      List<ChildrenUpdate> updates = new ArrayList<>();
+      try {
+        change.accept(updates);
+      } catch (RuntimeException e) {
+        LOGGER.error("Error changing the visible items of the source tree", e);
       }
-      if (!FileExplorerPane.isShowIgnored()) {
-        toRemove = new HashSet<>();
-        for (TreeItem ti : getChildren()) {
-          SourceTreeItem sti = (SourceTreeItem) ti;
-          if (sti.getState() == PathState.IGNORED || sti instanceof SourceTreeLoadMore) {
-            toRemove.add(sti);
-            ignored.add(sti);
-          }
-        }
-        getChildren().removeAll(toRemove);
+      if (!updates.isEmpty()) {
+        Platform.runLater(() -> updates.forEach(ChildrenUpdate::apply));
       }
-      if (!toRemove.isEmpty() || modified)
-        sortChildren();
+    });
+  }
+
+  private static ExecutorService createExecutor(int threads, String name) {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public synchronized void removeChild(SourceTreeItem item) {
+    getChildren().remove(item);
+    for (List<ChildEntry> entries : Arrays.asList(directoryEntries, fileEntries)) {
+      entries.removeIf(entry -> {
+        if (entry.item != item) {
+          return false;
+        }
+        release(entry);
+        return true;
+      });
+    }
+  }
+
+  /**
+   * Computes again the visible children of this item, so that the children
+   * whose state is now hidden leave the view and the hidden ones that are
+   * NORMAL again are shown.
+   */
+  public void moveChildrenWrongState() {
+    if (!refreshPending.compareAndSet(false, true)) {
+      // the queued refresh will see this change
+      return;
+    }
+    submitVisibilityChange(updates -> {
+      // cleared before the view is computed, so a change made while it's being
+      // computed queues another refresh
+      refreshPending.set(false);
+      collectView(updates, false);
     });
   }
 
@@ -675,4 +527,46 @@ public class SourceTreeDirectory extends SourceTreeItem {
     // directory: " + directory.getPath(), e);
     // }
   }
+
+  /*
+   * A loaded child of the directory. The item is only created while the entry
+   * is one of the visible rows (directories keep it once it's created).
+   */
+  private static final class ChildEntry {
+    private final SourceItem source;
+    private final String name;
+    private final boolean directory;
+    // the ignore rules are checked once, when the entry is loaded
+    private final boolean ignoredByRule;
+    private SourceTreeItem item;
+
+    private ChildEntry(SourceItem source, boolean directory, boolean ignoredByRule) {
+      this.source = source;
+      this.name = String.valueOf(source.getPath().getFileName());
+      this.directory = directory;
+      this.ignoredByRule = ignoredByRule;
+    }
+  }
+
+  /*
+   * The visible rows of a directory, computed in the background and set in the
+   * UI thread.
+   */
+  private static final class ChildrenUpdate {
+    private final SourceTreeDirectory directory;
+    private final List<TreeItem<String>> children;
+    private final int version;
+
+    private ChildrenUpdate(SourceTreeDirectory directory, List<TreeItem<String>> children) {
+      this.directory = directory;
+      this.children = children;
+      this.version = directory.viewVersion;
+    }
+
+    private void apply() {
+      if (version == directory.viewVersion) {
+        directory.getChildren().setAll(children);
+      }
+    }
+  }
 }
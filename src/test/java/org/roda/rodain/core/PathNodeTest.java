@@ -0,0 +1,132 @@
+package org.roda.rodain.core;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.roda.rodain.core.Constants.PathState;
+
+public class PathNodeTest {
+  private static final int THREADS = 8;
+  private static final int FILES = 400;
+
+  @After
+  public void reset() {
+    PathCollection.reset();
+  }
+
+  @Test
+  public void testChildrenCounters() {
+    PathNode.Names names = new PathNode.Names();
+    PathNode root = new PathNode(null, null);
+    PathNode dir = root.getOrCreateChild("dir", names);
+    PathNode a = dir.getOrCreateChild("a", names);
+    PathNode b = dir.getOrCreateChild("b", names);
+    dir.setState(PathState.NORMAL);
+
+    // children without state aren't counted
+    Assert.assertTrue(dir.deriveStateFromChildren());
+    Assert.assertEquals(PathState.NORMAL, dir.getState());
+
+    a.setState(PathState.IGNORED);
+    b.setState(PathState.IGNORED);
+    Assert.assertTrue(dir.deriveStateFromChildren());
+    Assert.assertEquals(PathState.IGNORED, dir.getState());
+
+    b.setState(PathState.MAPPED);
+    Assert.assertTrue(dir.deriveStateFromChildren());
+    Assert.assertEquals(PathState.MAPPED, dir.getState());
+    Assert.assertFalse(dir.deriveStateFromChildren());
+
+    a.setState(PathState.NORMAL);
+    Assert.assertTrue(dir.deriveStateFromChildren());
+    Assert.assertEquals(PathState.NORMAL, dir.getState());
+
+    // a removed child is no longer counted
+    dir.removeChild("a");
+    Assert.assertNull(dir.getChild("a"));
+    Assert.assertTrue(dir.deriveStateFromChildren());
+    Assert.assertEquals(PathState.MAPPED, dir.getState());
+
+    Assert.assertTrue(a.compareAndSetState(PathState.NORMAL, PathState.IGNORED));
+    Assert.assertFalse(b.compareAndSetState(PathState.NORMAL, PathState.IGNORED));
+    Assert.assertEquals(PathState.MAPPED, b.getState());
+  }
+
+  @Test
+  public void testChildrenTable() {
+    PathNode.Names names = new PathNode.Names();
+    PathNode root = new PathNode(null, null);
+    for (int i = 0; i < FILES; i++) {
+      Assert.assertSame(root.getOrCreateChild("file" + i, names), root.getOrCreateChild("file" + i, names));
+    }
+    Assert.assertEquals(FILES, root.getChildren().size());
+    for (int i = 0; i < FILES; i += 2) {
+      root.removeChild("file" + i);
+    }
+    Assert.assertEquals(FILES / 2, root.getChildren().size());
+    for (int i = 0; i < FILES; i++) {
+      Assert.assertEquals(i % 2 == 1, root.getChild("file" + i) != null);
+    }
+
+    // the same name segment is shared by the nodes of a tree
+    PathNode first = root.getOrCreateChild("x", names).getOrCreateChild(new String("data"), names);
+    PathNode second = root.getOrCreateChild("y", names).getOrCreateChild(new String("data"), names);
+    Assert.assertSame(first.getName(), second.getName());
+  }
+
+  @Test
+  public void testConcurrentApplyStates() throws Exception {
+    Path dir = Paths.get("rodain-test", "dir");
+    PathCollection.simpleAddPath(dir);
+
+    applyInParallel(dir, i -> PathState.MAPPED);
+    Assert.assertEquals(PathState.MAPPED, PathCollection.getState(dir));
+    for (int i = 0; i < FILES; i++) {
+      Assert.assertEquals(PathState.MAPPED, PathCollection.getState(dir.resolve("file" + i)));
+    }
+
+    applyInParallel(dir, i -> i % 2 == 0 ? PathState.NORMAL : PathState.MAPPED);
+    Assert.assertEquals(PathState.NORMAL, PathCollection.getState(dir));
+
+    applyInParallel(dir, i -> i % 2 == 0 ? PathState.IGNORED : PathState.MAPPED);
+    Assert.assertEquals(PathState.MAPPED, PathCollection.getState(dir));
+
+    applyInParallel(dir, i -> PathState.IGNORED);
+    Assert.assertEquals(PathState.IGNORED, PathCollection.getState(dir));
+  }
+
+  /*
+   * Each thread applies the state of a slice of the files of the directory, one
+   * file at a time, so that the updates of the directory counters interleave.
+   */
+  private static void applyInParallel(Path dir, IntFunction<PathState> stateOf) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int i = thread; i < FILES; i += THREADS) {
+            List<Path> paths = new ArrayList<>();
+            paths.add(dir.resolve("file" + i));
+            PathCollection.applyStates(paths, stateOf.apply(i));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
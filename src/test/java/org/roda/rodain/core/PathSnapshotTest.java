@@ -0,0 +1,133 @@
+package org.roda.rodain.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.roda.rodain.core.Constants.PathState;
+
+public class PathSnapshotTest {
+  private static final Set<PathState> IGNORED = EnumSet.of(PathState.IGNORED);
+
+  private Path tempDir;
+  private Path file;
+
+  @Before
+  public void setup() throws IOException {
+    tempDir = Files.createTempDirectory(PathSnapshotTest.class.getSimpleName());
+    file = tempDir.resolve("paths.bin");
+  }
+
+  @After
+  public void shutdown() {
+    ControllerUtils.deleteQuietly(tempDir);
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    PathNode.Names names = new PathNode.Names();
+    PathNode root = new PathNode(null, null);
+    PathNode dir = node(root, names, "/", "data", "dir");
+    dir.setState(PathState.NORMAL);
+    node(dir, names, "ignored.txt").setState(PathState.IGNORED);
+    node(dir, names, "mapped.txt").setState(PathState.MAPPED);
+    node(dir, names, "sub", "thumbs.db").setState(PathState.IGNORED);
+    node(root, names, "/", "other", "normal.txt").setState(PathState.NORMAL);
+
+    PathSnapshot.write(root, file, IGNORED);
+
+    PathNode.Names readNames = new PathNode.Names();
+    PathNode read = new PathNode(null, null);
+    Assert.assertEquals(2, PathSnapshot.read(read, readNames, file, IGNORED));
+
+    PathNode readDir = find(read, "/", "data", "dir");
+    Assert.assertNotNull(readDir);
+    // the ancestors are written without state
+    Assert.assertNull(readDir.getState());
+    Assert.assertEquals(PathState.IGNORED, find(readDir, "ignored.txt").getState());
+    Assert.assertEquals(PathState.IGNORED, find(readDir, "sub", "thumbs.db").getState());
+    Assert.assertNull(find(readDir, "sub").getState());
+
+    // the paths without a state to be restored, and without such descendants,
+    // aren't written
+    Assert.assertNull(find(readDir, "mapped.txt"));
+    Assert.assertNull(find(read, "/", "other"));
+  }
+
+  @Test
+  public void testOnlyRestoredStatesAreSet() throws IOException {
+    PathNode.Names names = new PathNode.Names();
+    PathNode root = new PathNode(null, null);
+    node(root, names, "a", "ignored").setState(PathState.IGNORED);
+    node(root, names, "a", "mapped").setState(PathState.MAPPED);
+
+    PathSnapshot.write(root, file, EnumSet.of(PathState.IGNORED, PathState.MAPPED));
+
+    PathNode read = new PathNode(null, null);
+    Assert.assertEquals(1, PathSnapshot.read(read, new PathNode.Names(), file, IGNORED));
+    Assert.assertEquals(PathState.IGNORED, find(read, "a", "ignored").getState());
+    Assert.assertNotNull(find(read, "a", "mapped"));
+    Assert.assertNull(find(read, "a", "mapped").getState());
+  }
+
+  @Test
+  public void testEmptyTree() throws IOException {
+    PathSnapshot.write(new PathNode(null, null), file, IGNORED);
+    PathNode read = new PathNode(null, null);
+    Assert.assertEquals(0, PathSnapshot.read(read, new PathNode.Names(), file, IGNORED));
+    Assert.assertTrue(read.getChildren().isEmpty());
+  }
+
+  @Test
+  public void testTruncatedSnapshot() throws IOException {
+    PathNode.Names names = new PathNode.Names();
+    PathNode root = new PathNode(null, null);
+    for (int i = 0; i < 10; i++) {
+      node(root, names, "dir", "file" + i).setState(PathState.IGNORED);
+    }
+    PathSnapshot.write(root, file, IGNORED);
+
+    byte[] content = Files.readAllBytes(file);
+    for (int length : new int[] {0, 8, 12, content.length / 2, content.length - 1}) {
+      Files.write(file, Arrays.copyOf(content, length));
+      try {
+        PathSnapshot.read(new PathNode(null, null), new PathNode.Names(), file, IGNORED);
+        Assert.fail("A snapshot truncated to " + length + " bytes must not be read");
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidSnapshot() throws IOException {
+    Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+    PathSnapshot.read(new PathNode(null, null), new PathNode.Names(), file, IGNORED);
+  }
+
+  private static PathNode node(PathNode parent, PathNode.Names names, String... segments) {
+    PathNode node = parent;
+    for (String segment : segments) {
+      node = node.getOrCreateChild(segment, names);
+    }
+    return node;
+  }
+
+  private static PathNode find(PathNode parent, String... segments) {
+    PathNode node = parent;
+    for (String segment : segments) {
+      if (node == null) {
+        return null;
+      }
+      node = node.getChild(segment);
+    }
+    return node;
+  }
+}
@@ -0,0 +1,92 @@
+package org.roda.rodain.core.creation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SipCreationProgressTest {
+  private static final long START = 1000000;
+  private static final double DELTA = 0.001;
+
+  @Test
+  public void testNoEstimateBeforeStart() {
+    SipCreationProgress progress = new SipCreationProgress(4, START);
+    Assert.assertEquals(-1, progress.getTimeRemainingEstimate(START + 5000), DELTA);
+
+    progress.sipStarted();
+    progress.addSipBytes(1000);
+    // there's no throughput sample yet
+    Assert.assertEquals(-1, progress.getTimeRemainingEstimate(START + 500), DELTA);
+  }
+
+  @Test
+  public void testEstimateWithBytes() {
+    SipCreationProgress progress = new SipCreationProgress(4, START);
+    progress.sipStarted();
+    progress.addSipBytes(1000);
+    progress.sipStarted();
+    progress.addSipBytes(3000);
+    progress.addProcessedBytes(2000);
+
+    // 2 bytes per millisecond, 4000 bytes started and 4000 estimated for the
+    // other 2 SIPs, 6000 bytes left
+    Assert.assertEquals(3000, progress.getTimeRemainingEstimate(START + 1000), DELTA);
+
+    // the new sample is smoothed: 0.2 * 4 + 0.8 * 2 = 2.4 bytes per millisecond
+    progress.addProcessedBytes(4000);
+    Assert.assertEquals(2000 / 2.4, progress.getTimeRemainingEstimate(START + 2000), DELTA);
+    Assert.assertEquals(2000 / 2.4, progress.getTimeRemainingEstimate(START + 2500), DELTA);
+  }
+
+  @Test
+  public void testSamplesAreTakenOncePerInterval() {
+    SipCreationProgress progress = new SipCreationProgress(1, START);
+    progress.sipStarted();
+    progress.addSipBytes(10000);
+    progress.addProcessedBytes(1000);
+    Assert.assertEquals(9000, progress.getTimeRemainingEstimate(START + 1000), DELTA);
+
+    // within the same interval the throughput isn't updated
+    progress.addProcessedBytes(5000);
+    Assert.assertEquals(4000, progress.getTimeRemainingEstimate(START + 1999), DELTA);
+  }
+
+  @Test
+  public void testSkippedSipsAreNotWorkLeft() {
+    SipCreationProgress progress = new SipCreationProgress(4, START);
+    progress.sipSkipped();
+    progress.sipSkipped();
+    progress.sipStarted();
+    progress.addSipBytes(1000);
+    progress.addProcessedBytes(500);
+
+    // 1000 bytes started and 1000 estimated for the last SIP
+    Assert.assertEquals(3000, progress.getTimeRemainingEstimate(START + 1000), DELTA);
+    Assert.assertEquals(2, progress.getCreatedSipsCount());
+  }
+
+  @Test
+  public void testEstimateWithoutBytes() {
+    SipCreationProgress progress = new SipCreationProgress(5, START);
+    progress.sipStarted();
+    Assert.assertEquals(-1, progress.getTimeRemainingEstimate(START + 1000), DELTA);
+
+    progress.sipCreated();
+    progress.sipStarted();
+    progress.sipFailed();
+    // 2 SIPs finished in 4 seconds, 3 left
+    Assert.assertEquals(6000, progress.getTimeRemainingEstimate(START + 4000), DELTA);
+  }
+
+  @Test
+  public void testSnapshot() {
+    SipCreationProgress progress = new SipCreationProgress(4, START);
+    progress.sipCreated();
+    progress.sipFailed();
+    SipCreationProgress.Snapshot snapshot = progress.snapshot(0.5, "sip", "action");
+    Assert.assertEquals(0.75, snapshot.getProgress(), DELTA);
+    Assert.assertEquals(1, snapshot.getCreatedSipsCount());
+    Assert.assertEquals(1, snapshot.getErrorCount());
+    Assert.assertFalse(snapshot.isFinished());
+    Assert.assertEquals(START, snapshot.getStartedTime());
+  }
+}
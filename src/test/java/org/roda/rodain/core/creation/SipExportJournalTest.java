@@ -0,0 +1,210 @@
+package org.roda.rodain.core.creation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.roda.rodain.core.Constants.SipType;
+import org.roda.rodain.core.ControllerUtils;
+import org.roda.rodain.core.PathCollection;
+import org.roda.rodain.core.sip.SipPreview;
+import org.roda.rodain.core.sip.SipRepresentation;
+
+public class SipExportJournalTest {
+  private Path tempDir;
+  private Path content;
+
+  @Before
+  public void setup() throws IOException {
+    tempDir = Files.createTempDirectory(SipExportJournalTest.class.getSimpleName());
+    content = Files.write(tempDir.resolve("content.txt"), "content".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @After
+  public void shutdown() {
+    ControllerUtils.deleteQuietly(tempDir);
+    PathCollection.reset();
+  }
+
+  /*
+   * Creates the SIP again, as a new session does when the rules are applied,
+   * with a new id.
+   */
+  private SipPreview sip(String title, Path... files) {
+    SipRepresentation representation = new SipRepresentation("rep1");
+    for (Path file : files) {
+      representation.addFile(file);
+    }
+    return new SipPreview(title, Collections.singleton(representation), null);
+  }
+
+  private SipPreview sip(String title) {
+    return sip(title, content);
+  }
+
+  /*
+   * Records the creation of the SIP, as a worker does, and returns its file.
+   */
+  private Path create(SipExportJournal journal, SipPreview sip, String name) throws IOException {
+    SipExportJournal.Identity identity = SipExportJournal.identify(sip);
+    journal.claim(identity);
+    journal.started(identity, name);
+    Path zip = Files.write(tempDir.resolve(name + ".zip"), "zip".getBytes(StandardCharsets.UTF_8));
+    journal.created(identity, zip);
+    return zip;
+  }
+
+  private static Path getCompleted(SipExportJournal journal, SipPreview sip) {
+    SipExportJournal.Identity identity = SipExportJournal.identify(sip);
+    return journal.getCompleted(journal.claim(identity), identity);
+  }
+
+  private static String getSipName(SipExportJournal journal, SipPreview sip) {
+    SipExportJournal.Entry entry = journal.claim(SipExportJournal.identify(sip));
+    return entry == null ? null : entry.getName();
+  }
+
+  @Test
+  public void testResumeWithNewSips() throws IOException {
+    Path other = Files.write(tempDir.resolve("other.txt"), "other".getBytes(StandardCharsets.UTF_8));
+    Path zip;
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      zip = create(journal, sip("created"), "created-name");
+      SipExportJournal.Identity started = SipExportJournal.identify(sip("started", other));
+      journal.started(started, "started-name");
+    }
+
+    // the SIPs of the new session have other ids
+    SipPreview created = sip("created");
+    SipPreview started = sip("started", other);
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      Assert.assertEquals(2, journal.getSipNames().size());
+      Assert.assertEquals(zip.toAbsolutePath(), getCompleted(journal, created));
+      // only started, built again with the same name
+      Assert.assertEquals("started-name", getSipName(journal, started));
+    }
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      // another SIP of the same files isn't the same SIP
+      Assert.assertNull(getCompleted(journal, sip("renamed")));
+      Assert.assertNull(getSipName(journal, sip("started")));
+    }
+
+    // the SIPs of other formats aren't the same
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.BAGIT, true, false)) {
+      Assert.assertNull(getCompleted(journal, created));
+      Assert.assertTrue(journal.getSipNames().isEmpty());
+    }
+  }
+
+  @Test
+  public void testSameKeyIsClaimedOnce() throws IOException {
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      create(journal, sip("sip"), "name");
+    }
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      Assert.assertNotNull(getCompleted(journal, sip("sip")));
+      // an identical SIP of the same exportation is built
+      Assert.assertNull(getCompleted(journal, sip("sip")));
+    }
+  }
+
+  @Test
+  public void testNotResumed() throws IOException {
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, false, false)) {
+      create(journal, sip("sip"), "name");
+    }
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, false, false)) {
+      Assert.assertNull(getCompleted(journal, sip("sip")));
+      Assert.assertTrue(journal.getSipNames().isEmpty());
+    }
+    // the journal has been started again
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      Assert.assertTrue(journal.getSipNames().isEmpty());
+    }
+  }
+
+  @Test
+  public void testChangedContent() throws IOException {
+    SipExportJournal.Identity identity = SipExportJournal.identify(sip("sip"));
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      create(journal, sip("sip"), "name");
+    }
+
+    Files.write(content, "changed content".getBytes(StandardCharsets.UTF_8));
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      SipExportJournal.Identity changed = SipExportJournal.identify(sip("sip"));
+      SipExportJournal.Entry entry = journal.claim(changed);
+      // the same SIP, built again with the same name
+      Assert.assertNotNull(entry);
+      Assert.assertEquals("name", entry.getName());
+      Assert.assertNull(journal.getCompleted(entry, changed));
+      Assert.assertNotNull(journal.getCompleted(entry, identity));
+    }
+  }
+
+  @Test
+  public void testChangedFile() throws IOException {
+    Path zip;
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, true)) {
+      zip = create(journal, sip("sip"), "name");
+    }
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, true)) {
+      Assert.assertNotNull(getCompleted(journal, sip("sip")));
+    }
+
+    // same size, different content
+    Files.write(zip, "pkz".getBytes(StandardCharsets.UTF_8));
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      Assert.assertNotNull(getCompleted(journal, sip("sip")));
+    }
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, true)) {
+      Assert.assertNull(getCompleted(journal, sip("sip")));
+    }
+
+    Files.write(zip, "zip!".getBytes(StandardCharsets.UTF_8));
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      Assert.assertNull(getCompleted(journal, sip("sip")));
+    }
+  }
+
+  @Test
+  public void testWithoutChecksumsIsNotVerified() throws IOException {
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      create(journal, sip("sip"), "name");
+    }
+    Assert.assertFalse(new String(Files.readAllBytes(tempDir.resolve(SipExportJournal.FILE_NAME)),
+      StandardCharsets.UTF_8).contains("checksum"));
+    // the checksum wasn't recorded, so the SIP can't be verified
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, true)) {
+      Assert.assertNull(getCompleted(journal, sip("sip")));
+    }
+  }
+
+  @Test
+  public void testTornLine() throws IOException {
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      create(journal, sip("created"), "created-name");
+    }
+    // the application stopped while writing a line
+    Files.write(tempDir.resolve(SipExportJournal.FILE_NAME),
+      "{\"event\":\"FAILED\",\"type\":\"EARK2\",\"key\":\"".getBytes(StandardCharsets.UTF_8),
+      StandardOpenOption.APPEND);
+
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      Assert.assertNotNull(getCompleted(journal, sip("created")));
+      journal.started(SipExportJournal.identify(sip("next")), "next-name");
+    }
+    // the records written after the incomplete line are read
+    try (SipExportJournal journal = SipExportJournal.open(tempDir, SipType.EARK2, true, false)) {
+      Assert.assertNotNull(getCompleted(journal, sip("created")));
+      Assert.assertEquals("next-name", getSipName(journal, sip("next")));
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package org.roda.rodain.core.rules.filters;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.roda.rodain.core.Constants.PathState;
+import org.roda.rodain.core.PathCollection;
+
+public class ContentFilterTest {
+  private static final String ROOT = File.separator + "content-filter-test";
+
+  @After
+  public void reset() {
+    PathCollection.reset();
+  }
+
+  private static String path(String... segments) {
+    return ROOT + File.separator + String.join(File.separator, segments);
+  }
+
+  @Test
+  public void testEmptyFilter() {
+    ContentFilter filter = new ContentFilter();
+    Assert.assertFalse(filter.filter(path("a")));
+    Assert.assertFalse(filter.filter(ROOT));
+  }
+
+  @Test
+  public void testPathAndDescendants() {
+    ContentFilter filter = new ContentFilter();
+    filter.addIgnored(path("a", "b"));
+
+    Assert.assertTrue(filter.filter(path("a", "b")));
+    Assert.assertTrue(filter.filter(path("a", "b", "c")));
+    Assert.assertTrue(filter.filter(path("a", "b", "c", "d.txt")));
+    // a trailing separator doesn't change the path
+    Assert.assertTrue(filter.filter(path("a", "b") + File.separator));
+
+    // the ancestors and the siblings that share a prefix aren't filtered
+    Assert.assertFalse(filter.filter(path("a")));
+    Assert.assertFalse(filter.filter(path("a", "bc")));
+    Assert.assertFalse(filter.filter(path("a", "c")));
+    Assert.assertFalse(filter.filter(path("ab")));
+  }
+
+  @Test
+  public void testIgnoredAndMappedShareTheTrie() {
+    ContentFilter filter = new ContentFilter();
+    filter.addAllIgnored(Arrays.asList(path("ignored", "x"), path("ignored", "y")));
+    filter.addAllMapped(Arrays.asList(path("mapped")));
+    filter.addMapped(path("other", "mapped.txt"));
+
+    Assert.assertTrue(filter.filter(path("ignored", "x", "file")));
+    Assert.assertTrue(filter.filter(path("ignored", "y")));
+    Assert.assertFalse(filter.filter(path("ignored", "z")));
+    Assert.assertTrue(filter.filter(path("mapped", "file")));
+    Assert.assertTrue(filter.filter(path("other", "mapped.txt")));
+    Assert.assertFalse(filter.filter(path("other", "mapped.txt.bak")));
+  }
+
+  @Test
+  public void testManyChildren() {
+    ContentFilter filter = new ContentFilter();
+    for (int i = 0; i < 1000; i += 2) {
+      filter.addIgnored(path("dir", "file" + i));
+    }
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals(i % 2 == 0, filter.filter(path("dir", "file" + i)));
+    }
+  }
+
+  @Test
+  public void testPathCollectionState() {
+    ContentFilter filter = new ContentFilter();
+    PathCollection.addPath(Paths.get(path("collection", "mapped")), PathState.MAPPED);
+
+    Assert.assertTrue(filter.filter(path("collection", "mapped")));
+    Assert.assertTrue(filter.filter(path("collection", "mapped", "file")));
+    Assert.assertFalse(filter.filter(path("collection", "normal")));
+  }
+}
@@ -0,0 +1,93 @@
+package org.roda.rodain.core.rules.filters;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IgnoredFilterTest {
+
+  private static IgnoredFilter.CompiledRules compile(String... rules) {
+    Set<String> set = new LinkedHashSet<>(Arrays.asList(rules));
+    return new IgnoredFilter.CompiledRules(set);
+  }
+
+  @Test
+  public void testNoRules() {
+    IgnoredFilter.CompiledRules rules = compile();
+    Assert.assertTrue(rules.isEmpty());
+    Assert.assertFalse(rules.matches("file.txt"));
+  }
+
+  @Test
+  public void testLiteralRules() {
+    IgnoredFilter.CompiledRules rules = compile("Thumbs\\.db", "desktop\\.ini");
+    Assert.assertFalse(rules.isEmpty());
+    Assert.assertTrue(rules.matches("Thumbs.db"));
+    Assert.assertTrue(rules.matches("desktop.ini"));
+    // the escaped dot only matches a dot
+    Assert.assertFalse(rules.matches("ThumbsXdb"));
+    // the whole name must match
+    Assert.assertFalse(rules.matches("Thumbs.db.bak"));
+    Assert.assertFalse(rules.matches("thumbs.db"));
+  }
+
+  @Test
+  public void testPrefixRules() {
+    IgnoredFilter.CompiledRules rules = compile("\\..*", "~\\$.*");
+    Assert.assertTrue(rules.matches(".git"));
+    Assert.assertTrue(rules.matches(".DS_Store"));
+    Assert.assertTrue(rules.matches("~$report.docx"));
+    Assert.assertFalse(rules.matches("report.docx"));
+    Assert.assertFalse(rules.matches("~report.docx"));
+  }
+
+  @Test
+  public void testRegexRules() {
+    IgnoredFilter.CompiledRules rules = compile("[0-9]+\\.tmp", "desktop.ini", "a|b");
+    Assert.assertTrue(rules.matches("123.tmp"));
+    Assert.assertFalse(rules.matches("x123.tmp"));
+    // an unescaped dot keeps its regular expression meaning
+    Assert.assertTrue(rules.matches("desktop.ini"));
+    Assert.assertTrue(rules.matches("desktopXini"));
+    // each rule is grouped, so the alternation doesn't leak into the others
+    Assert.assertTrue(rules.matches("a"));
+    Assert.assertTrue(rules.matches("b"));
+    Assert.assertFalse(rules.matches("ab"));
+  }
+
+  @Test
+  public void testBackReferenceRules() {
+    // combined in a single pattern, the groups would be renumbered and "\\1"
+    // would refer to the group of the first rule
+    IgnoredFilter.CompiledRules rules = compile("(x)y", "(.)\\1.*", "(?<c>z)\\k<c>");
+    Assert.assertTrue(rules.matches("xy"));
+    Assert.assertTrue(rules.matches("aab"));
+    Assert.assertTrue(rules.matches("zz"));
+    Assert.assertFalse(rules.matches("abb"));
+    Assert.assertFalse(rules.matches("xyz"));
+  }
+
+  @Test
+  public void testMixedRules() {
+    IgnoredFilter.CompiledRules rules = compile("Thumbs\\.db", "\\..*", "[0-9]+\\.tmp");
+    Assert.assertTrue(rules.matches("Thumbs.db"));
+    Assert.assertTrue(rules.matches(".hidden"));
+    Assert.assertTrue(rules.matches("1.tmp"));
+    Assert.assertFalse(rules.matches("data.csv"));
+  }
+
+  @Test
+  public void testIgnoredAncestors() {
+    Assert.assertFalse(IgnoredFilter.isIgnored(Paths.get("root", "ignored-test", "file.txt"), false));
+
+    // the verdicts memoized with the previous rules aren't used anymore
+    IgnoredFilter.addIgnoreRule("ignored-test");
+    Assert.assertTrue(IgnoredFilter.isIgnored(Paths.get("root", "ignored-test", "file.txt"), false));
+    Assert.assertTrue(IgnoredFilter.isIgnored(Paths.get("root", "ignored-test", "sub", "file.txt"), false));
+    Assert.assertFalse(IgnoredFilter.isIgnored(Paths.get("root", "other", "file.txt"), false));
+  }
+}
@@ -0,0 +1,87 @@
+package org.roda.rodain.core.sip.creators;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.roda.rodain.core.Constants.MetadataOption;
+import org.roda.rodain.core.Constants.PathState;
+import org.roda.rodain.core.ControllerUtils;
+import org.roda.rodain.core.PathCollection;
+import org.roda.rodain.core.rules.filters.ContentFilter;
+import org.roda.rodain.core.sip.SipPreview;
+import org.roda.rodain.core.utils.ParallelWalkFileTree;
+import org.roda.rodain.core.utils.WalkFileTree;
+
+public class SipPerFileTest {
+  private Path tempDir;
+
+  @Before
+  public void setup() throws IOException {
+    tempDir = Files.createTempDirectory(SipPerFileTest.class.getSimpleName());
+    for (String name : new String[] {"f1.txt", "f2.txt", "f3.txt"}) {
+      Files.createFile(tempDir.resolve(name));
+    }
+    Path sub = Files.createDirectory(tempDir.resolve("sub"));
+    Files.createFile(sub.resolve("f4.txt"));
+    Files.createFile(sub.resolve("f5.txt"));
+  }
+
+  @After
+  public void shutdown() {
+    ControllerUtils.deleteQuietly(tempDir);
+    PathCollection.reset();
+  }
+
+  private static SipPerFile creator(ContentFilter filter) {
+    return new SipPerFile("rule", Collections.singleton(filter), MetadataOption.NEW_FILE, null, null, null, null);
+  }
+
+  private static Set<String> titles(SipPerFile creator) {
+    Set<String> titles = new HashSet<>();
+    for (SipPreview sip : creator.getSips().values()) {
+      titles.add(sip.getTitle());
+    }
+    return titles;
+  }
+
+  private void assertOneSipPerFile(SipPerFile creator) {
+    Assert.assertEquals(new HashSet<>(Arrays.asList("f1.txt", "f2.txt", "f3.txt", "f4.txt", "f5.txt")),
+      titles(creator));
+    Assert.assertEquals(PathState.MAPPED, PathCollection.getState(tempDir.resolve("f3.txt")));
+    Assert.assertEquals(PathState.MAPPED, PathCollection.getState(tempDir.resolve("sub").resolve("f5.txt")));
+    Assert.assertEquals(PathState.MAPPED, PathCollection.getState(tempDir));
+  }
+
+  @Test
+  public void testOneSipPerFile() {
+    SipPerFile creator = creator(new ContentFilter());
+    new WalkFileTree(Collections.singleton(tempDir.toString()), creator).run();
+    assertOneSipPerFile(creator);
+  }
+
+  @Test
+  public void testOneSipPerFileWithParallelWalk() {
+    SipPerFile creator = creator(new ContentFilter());
+    new ParallelWalkFileTree(Collections.singleton(tempDir.toString()), creator).run();
+    assertOneSipPerFile(creator);
+  }
+
+  @Test
+  public void testIgnoredFileIsFiltered() {
+    ContentFilter filter = new ContentFilter();
+    filter.addIgnored(tempDir.resolve("f2.txt").toString());
+    SipPerFile creator = creator(filter);
+    new WalkFileTree(Collections.singleton(tempDir.toString()), creator).run();
+    Assert.assertEquals(new HashSet<>(Arrays.asList("f1.txt", "f3.txt", "f4.txt", "f5.txt")),
+      titles(creator));
+  }
+}
@@ -0,0 +1,103 @@
+package org.roda.rodain.core.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.roda.rodain.core.ControllerUtils;
+
+public class ChecksumCacheTest {
+  private static final Set<String> SHA256 = Collections.singleton("SHA-256");
+  private static final FileTime MODIFIED = FileTime.fromMillis(1000000000000L);
+  // the SHA-256 of "content"
+  private static final String CONTENT_SHA256 = "ED7002B439E9AC845F22357D822BAC1444730FBDB6016D3EC9432297B9EC9F73";
+
+  private Path tempDir;
+  private Path cacheFile;
+  private Path file;
+
+  @Before
+  public void setup() throws IOException {
+    tempDir = Files.createTempDirectory(ChecksumCacheTest.class.getSimpleName());
+    cacheFile = tempDir.resolve("checksums.jsonl");
+    ChecksumCache.reset(cacheFile);
+    file = write(tempDir.resolve("file.txt"), "content", MODIFIED);
+  }
+
+  @After
+  public void shutdown() {
+    ChecksumCache.reset(null);
+    ControllerUtils.deleteQuietly(tempDir);
+  }
+
+  private static Path write(Path path, String content, FileTime modified) throws IOException {
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(path, modified);
+    return path;
+  }
+
+  @Test
+  public void testCompute() throws IOException {
+    Assert.assertEquals(CONTENT_SHA256, ChecksumCache.compute(file, SHA256).get("SHA-256"));
+    Assert.assertEquals(CONTENT_SHA256, ChecksumCache.get(file, SHA256).get("SHA-256"));
+  }
+
+  @Test
+  public void testUnchangedFileIsNotRead() throws IOException {
+    ChecksumCache.get(file, SHA256);
+    // same size and modification time
+    write(file, "CONTENT", MODIFIED);
+    Assert.assertEquals(CONTENT_SHA256, ChecksumCache.get(file, SHA256).get("SHA-256"));
+  }
+
+  @Test
+  public void testModifiedFileIsInvalidated() throws IOException {
+    ChecksumCache.get(file, SHA256);
+    write(file, "CONTENT", FileTime.fromMillis(MODIFIED.toMillis() + 1000));
+    String changed = ChecksumCache.get(file, SHA256).get("SHA-256");
+    Assert.assertNotEquals(CONTENT_SHA256, changed);
+    Assert.assertEquals(ChecksumCache.compute(file, SHA256).get("SHA-256"), changed);
+
+    write(file, "content!", FileTime.fromMillis(MODIFIED.toMillis() + 1000));
+    Assert.assertEquals(ChecksumCache.compute(file, SHA256).get("SHA-256"),
+      ChecksumCache.get(file, SHA256).get("SHA-256"));
+  }
+
+  @Test
+  public void testAlgorithmsAreMerged() throws IOException {
+    ChecksumCache.get(file, SHA256);
+    Set<String> both = new HashSet<>(Arrays.asList("SHA-256", "MD5"));
+    Map<String, String> checksums = ChecksumCache.get(file, both);
+    Assert.assertEquals(2, checksums.size());
+    Assert.assertEquals(CONTENT_SHA256, checksums.get("SHA-256"));
+
+    write(file, "CONTENT", MODIFIED);
+    Assert.assertEquals(checksums, ChecksumCache.get(file, both));
+  }
+
+  @Test
+  public void testCacheIsKeptOnDisk() throws IOException {
+    Set<String> both = new HashSet<>(Arrays.asList("SHA-256", "MD5"));
+    Map<String, String> checksums = ChecksumCache.get(file, both);
+    // the application stopped while writing a line
+    Files.write(cacheFile, "{\"path\":\"".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+    ChecksumCache.reset(cacheFile);
+    write(file, "CONTENT", MODIFIED);
+    Assert.assertEquals(checksums, ChecksumCache.get(file, both));
+    // the cache file has been rewritten without the incomplete line
+    Assert.assertEquals(1, Files.readAllLines(cacheFile, StandardCharsets.UTF_8).size());
+  }
+}
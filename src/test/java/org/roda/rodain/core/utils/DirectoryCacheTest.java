@@ -0,0 +1,124 @@
+package org.roda.rodain.core.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.roda.rodain.core.ControllerUtils;
+
+public class DirectoryCacheTest {
+  // the default maximum number of cached entries is 200000
+  private static final int LISTING_SIZE = 100000;
+  private static final FileTime MODIFIED = FileTime.fromMillis(1000);
+
+  @Before
+  public void setup() {
+    DirectoryCache.clear();
+  }
+
+  @After
+  public void shutdown() {
+    DirectoryCache.clear();
+  }
+
+  private static List<DirectoryCache.Entry> listing(Path dir, int size) {
+    List<DirectoryCache.Entry> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      entries.add(new DirectoryCache.Entry(dir.resolve("file" + i), null));
+    }
+    return entries;
+  }
+
+  @Test
+  public void testGetListing() {
+    Path dir = Paths.get("cache-test", "dir");
+    Assert.assertNull(DirectoryCache.getListing(dir, MODIFIED));
+
+    DirectoryCache.put(dir, MODIFIED, listing(dir, 3));
+    List<DirectoryCache.Entry> cached = DirectoryCache.getListing(dir, MODIFIED);
+    Assert.assertNotNull(cached);
+    Assert.assertEquals(3, cached.size());
+    Assert.assertEquals(dir.resolve("file0"), cached.get(0).getPath());
+    Assert.assertEquals(dir.resolve("file2"), cached.get(2).getPath());
+  }
+
+  @Test
+  public void testModifiedDirectoryIsInvalidated() {
+    Path dir = Paths.get("cache-test", "dir");
+    DirectoryCache.put(dir, MODIFIED, listing(dir, 3));
+
+    Assert.assertNull(DirectoryCache.getListing(dir, FileTime.fromMillis(2000)));
+    // the stale listing has been removed
+    Assert.assertNull(DirectoryCache.getListing(dir, MODIFIED));
+
+    DirectoryCache.put(dir, MODIFIED, listing(dir, 3));
+    DirectoryCache.invalidate(dir);
+    Assert.assertNull(DirectoryCache.getListing(dir, MODIFIED));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    Path a = Paths.get("cache-test", "a");
+    Path b = Paths.get("cache-test", "b");
+    Path c = Paths.get("cache-test", "c");
+    DirectoryCache.put(a, MODIFIED, listing(a, LISTING_SIZE));
+    DirectoryCache.put(b, MODIFIED, listing(b, LISTING_SIZE));
+    // makes b the least recently used listing
+    Assert.assertNotNull(DirectoryCache.getListing(a, MODIFIED));
+
+    DirectoryCache.put(c, MODIFIED, listing(c, LISTING_SIZE));
+    Assert.assertNotNull(DirectoryCache.getListing(a, MODIFIED));
+    Assert.assertNull(DirectoryCache.getListing(b, MODIFIED));
+    Assert.assertNotNull(DirectoryCache.getListing(c, MODIFIED));
+  }
+
+  @Test
+  public void testReplacedListingIsNotCountedTwice() {
+    Path a = Paths.get("cache-test", "a");
+    Path b = Paths.get("cache-test", "b");
+    DirectoryCache.put(a, MODIFIED, listing(a, LISTING_SIZE));
+    DirectoryCache.put(a, MODIFIED, listing(a, LISTING_SIZE));
+    DirectoryCache.put(b, MODIFIED, listing(b, LISTING_SIZE));
+    Assert.assertNotNull(DirectoryCache.getListing(a, MODIFIED));
+    Assert.assertNotNull(DirectoryCache.getListing(b, MODIFIED));
+  }
+
+  @Test
+  public void testListingBiggerThanTheCacheIsIgnored() {
+    Path a = Paths.get("cache-test", "a");
+    Path big = Paths.get("cache-test", "big");
+    DirectoryCache.put(a, MODIFIED, listing(a, 3));
+    DirectoryCache.put(big, MODIFIED, listing(big, 2 * LISTING_SIZE + 1));
+    Assert.assertNull(DirectoryCache.getListing(big, MODIFIED));
+    // nothing was evicted to make room for it
+    Assert.assertNotNull(DirectoryCache.getListing(a, MODIFIED));
+  }
+
+  @Test
+  public void testListAndGetAttributes() throws IOException {
+    Path dir = Files.createTempDirectory(DirectoryCacheTest.class.getSimpleName());
+    try {
+      Path file = Files.createFile(dir.resolve("file.txt"));
+      Path subDir = Files.createDirectory(dir.resolve("sub"));
+
+      List<DirectoryCache.Entry> entries = DirectoryCache.list(dir);
+      Assert.assertEquals(2, entries.size());
+      Assert.assertNotNull(DirectoryCache.getListing(dir));
+      Assert.assertTrue(DirectoryCache.getAttributes(file).isRegularFile());
+      Assert.assertTrue(DirectoryCache.getAttributes(subDir).isDirectory());
+      Assert.assertTrue(DirectoryCache.isDirectory(subDir));
+      Assert.assertFalse(DirectoryCache.isDirectory(file));
+      Assert.assertNull(DirectoryCache.getAttributes(dir.resolve("missing")));
+    } finally {
+      ControllerUtils.deleteQuietly(dir);
+    }
+  }
+}